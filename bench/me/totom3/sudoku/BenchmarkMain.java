@@ -0,0 +1,40 @@
+package me.totom3.sudoku;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the GC profiler, which adds the allocation rate
+ * ({@code gc.alloc.rate.norm}, in bytes per operation) to every result.
+ * <p>
+ * The benchmarks live in their own source root and need {@code jmh-core} on
+ * the class path and {@code jmh-generator-annprocess} as an annotation
+ * processor when compiling, together with the main sources. With the JMH 1.37
+ * jars and their dependencies in {@code lib}, from the repository root:
+ * <pre>
+ * javac -d build/bench -cp "lib/*" $(find src bench -name '*.java')
+ * java -cp "build/bench:lib/*" me.totom3.sudoku.BenchmarkMain
+ * </pre>
+ * The jars are {@code jmh-core}, {@code jmh-generator-annprocess},
+ * {@code jopt-simple} and {@code commons-math3}; the processor is picked up
+ * from the class path and writes the generated benchmarks and their list
+ * into {@code build/bench}. The optional argument is a regular expression
+ * selecting the benchmarks to run, for instance
+ * {@code SolverBenchmark.reusedSolver}.
+ *
+ * @author Totom3
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : "me\\.totom3\\.sudoku\\..*Benchmark")
+				.addProfiler(GCProfiler.class)
+				.build();
+
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,57 @@
+package me.totom3.sudoku;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Canonicalizes every puzzle of a {@link PuzzleCorpus} per invocation, and
+ * adds them to a deduplication index, which after the first invocation
+ * measures the lookup of puzzles already seen.
+ *
+ * @author Totom3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CanonicalizerBenchmark {
+
+	@Param({"EASY", "HARD", "SEVENTEEN_CLUES"})
+	public PuzzleCorpus corpus;
+
+	private int[][] puzzles;
+	private SudokuCanonicalizer canonicalizer;
+	private PuzzleDedupIndex index;
+
+	@Setup
+	public void setUp() {
+		puzzles = corpus.getPuzzles();
+		canonicalizer = new SudokuCanonicalizer();
+		index = new PuzzleDedupIndex(puzzles.length);
+	}
+
+	@Benchmark
+	public void canonicalize(Blackhole blackhole) {
+		for (int[] puzzle : puzzles)
+			blackhole.consume(canonicalizer.canonicalize(puzzle));
+	}
+
+	@Benchmark
+	public void dedup(Blackhole blackhole) {
+		for (int[] puzzle : puzzles)
+			blackhole.consume(index.addPuzzle(puzzle));
+	}
+}
@@ -0,0 +1,56 @@
+package me.totom3.sudoku;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generates complete grids, both through the allocating convenience method
+ * and with a caller-supplied generator and buffer. Only the latter takes the
+ * generation mode.
+ *
+ * @author Totom3
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GeneratorBenchmark {
+
+	@State(Scope.Thread)
+	public static class Buffer {
+
+		@Param({"BACKTRACKING", "TRANSFORMATION"})
+		public SudokuGenerator.Mode mode;
+
+		private SplittableRandom random;
+		private int[] grid;
+
+		@Setup
+		public void setUp() {
+			random = new SplittableRandom(0x5EED);
+			grid = new int[81];
+		}
+	}
+
+	@Benchmark
+	public int[] generateSudoku() {
+		return SudokuGenerator.generateSudoku();
+	}
+
+	@Benchmark
+	public int[] generateSudokuInto(Buffer buffer) {
+		return SudokuGenerator.generateSudoku(buffer.mode, buffer.random, buffer.grid);
+	}
+}
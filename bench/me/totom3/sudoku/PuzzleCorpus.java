@@ -0,0 +1,51 @@
+package me.totom3.sudoku;
+
+/**
+ * Fixed puzzles for the benchmarks, so that runs are comparable across
+ * changes. Every puzzle has a unique solution.
+ *
+ * @author Totom3
+ */
+public enum PuzzleCorpus {
+
+	/**
+	 * Solved by naked and hidden singles alone.
+	 */
+	EASY(
+			"003020600900305001001806400008102900700000008006708200002609500800203009005010300",
+			"200080300060070084030500209000105408000000000402706000301007040720040060004010003",
+			"000000907000420180000705026100904000050000040000507009920108000034059000507000000"),
+	/**
+	 * Need guessing and deep backtracking.
+	 */
+	HARD(
+			"800000000003600000070090200050007000000045700000100030001000068008500010090000400",
+			"000000039000001005003050800008090006070002000100400000009080050020000600400700000",
+			"100007090030020008009600500005300900010080002600004000300000010040000007007000300"),
+	/**
+	 * Minimal puzzles with 17 clues, the fewest a valid sudoku can have.
+	 */
+	SEVENTEEN_CLUES(
+			"000000010400000000020000000000050407008000300001090000300400200050100000000806000",
+			"000000012000035000000600070700000300000400800100000000000120000080000040050000600",
+			"000000012003600000000007000410020000000500300700000600280000040000300500000000000");
+
+	private final String[] puzzles;
+
+	private PuzzleCorpus(String... puzzles) {
+		this.puzzles = puzzles;
+	}
+
+	/**
+	 * Returns new grids holding the puzzles, with {@code 0} for empty cells.
+	 */
+	public int[][] getPuzzles() {
+		int[][] grids = new int[puzzles.length][81];
+		for (int p = 0; p < puzzles.length; ++p) {
+			for (int i = 0; i < 81; ++i)
+				grids[p][i] = puzzles[p].charAt(i) - '0';
+		}
+
+		return grids;
+	}
+}
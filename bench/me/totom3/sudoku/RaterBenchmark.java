@@ -0,0 +1,85 @@
+package me.totom3.sudoku;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Rates every puzzle of a {@link PuzzleCorpus} per invocation, or a batch of
+ * generated puzzles with the hole count of the GUI, either through the
+ * rating cache or around it.
+ *
+ * @author Totom3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RaterBenchmark {
+
+	private static final long SEED = 42;
+	private static final int GENERATED_PUZZLES = 100;
+	private static final int HOLES = 50;
+
+	@State(Scope.Thread)
+	public static class Corpus {
+
+		@Param({"EASY", "HARD", "SEVENTEEN_CLUES"})
+		public PuzzleCorpus corpus;
+
+		private int[][] puzzles;
+
+		@Setup
+		public void setUp() {
+			puzzles = corpus.getPuzzles();
+		}
+	}
+
+	private int[][] generatedPuzzles;
+	private SudokuRater rater;
+
+	@Setup
+	public void setUp() {
+		generatedPuzzles = new int[GENERATED_PUZZLES][];
+		for (int i = 0; i < GENERATED_PUZZLES; ++i)
+			generatedPuzzles[i] = SudokuMaskGenerator.generatePuzzle(SEED, i, HOLES).getClues();
+
+		rater = new SudokuRater();
+	}
+
+	@Benchmark
+	public void corpus(Corpus corpus, Blackhole blackhole) {
+		for (int[] puzzle : corpus.puzzles)
+			blackhole.consume(rater.rateUncached(puzzle));
+	}
+
+	/**
+	 * Compare with {@link #cached}.
+	 */
+	@Benchmark
+	public void uncached(Blackhole blackhole) {
+		for (int[] puzzle : generatedPuzzles)
+			blackhole.consume(rater.rateUncached(puzzle));
+	}
+
+	/**
+	 * Every puzzle is in the cache after the first invocation.
+	 */
+	@Benchmark
+	public void cached(Blackhole blackhole) {
+		for (int[] puzzle : generatedPuzzles)
+			blackhole.consume(rater.rate(puzzle));
+	}
+}
@@ -0,0 +1,130 @@
+package me.totom3.sudoku;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Solves every puzzle of a {@link PuzzleCorpus} per invocation, asking for at
+ * most 1 or 2 solutions or for all of them ({@code -1}).
+ *
+ * @author Totom3
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SolverBenchmark {
+
+	/**
+	 * Search options of the backtracking solver.
+	 */
+	public enum Configuration {
+
+		/**
+		 * Row-major order without propagation, the solver's defaults.
+		 */
+		PLAIN,
+		/**
+		 * Most constrained cell first with propagation of singles, as used
+		 * by the generators.
+		 */
+		PROPAGATING
+	}
+
+	@State(Scope.Thread)
+	public static class Puzzles {
+
+		@Param({"EASY", "HARD", "SEVENTEEN_CLUES"})
+		public PuzzleCorpus corpus;
+
+		@Param({"1", "2", "-1"})
+		public int limit;
+
+		private int[][] puzzles;
+
+		@Setup
+		public void setUp() {
+			puzzles = corpus.getPuzzles();
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Solver {
+
+		@Param({"PLAIN", "PROPAGATING"})
+		public Configuration configuration;
+
+		private SudokuSolver solver;
+
+		@Setup
+		public void setUp() {
+			solver = new SudokuSolver();
+			configure(solver);
+		}
+
+		void configure(SudokuSolver solver) {
+			if (configuration == Configuration.PROPAGATING) {
+				solver.setCellOrdering(SudokuSolver.CellOrdering.MOST_CONSTRAINED);
+				solver.setPropagating(true);
+			}
+		}
+	}
+
+	private SudokuEngine dancingLinks;
+
+	@Setup
+	public void setUp() {
+		dancingLinks = SudokuEngineType.DANCING_LINKS.create();
+	}
+
+	/**
+	 * A new solver per puzzle, as callers of the original API do.
+	 */
+	@Benchmark
+	public void newSolver(Puzzles puzzles, Solver solver, Blackhole blackhole) {
+		for (int[] puzzle : puzzles.puzzles) {
+			SudokuSolver newSolver = new SudokuSolver(puzzle);
+			solver.configure(newSolver);
+			blackhole.consume(newSolver.getSolutions(puzzles.limit));
+		}
+	}
+
+	@Benchmark
+	public void reusedSolver(Puzzles puzzles, Solver solver, Blackhole blackhole) {
+		for (int[] puzzle : puzzles.puzzles) {
+			solver.solver.reset(puzzle);
+			blackhole.consume(solver.solver.getSolutions(puzzles.limit));
+		}
+	}
+
+	@Benchmark
+	public void countSolutions(Puzzles puzzles, Solver solver, Blackhole blackhole) {
+		for (int[] puzzle : puzzles.puzzles) {
+			solver.solver.reset(puzzle);
+			blackhole.consume(solver.solver.countSolutions(puzzles.limit));
+		}
+	}
+
+	/**
+	 * Dancing links has no configuration; compare it with the other results
+	 * for the same corpus and limit.
+	 */
+	@Benchmark
+	public void dancingLinks(Puzzles puzzles, Blackhole blackhole) {
+		for (int[] puzzle : puzzles.puzzles)
+			blackhole.consume(dancingLinks.getSolutions(puzzle, puzzles.limit));
+	}
+}
@@ -0,0 +1,32 @@
+package me.totom3.sudoku;
+
+import java.util.Set;
+
+/**
+ * Adapts {@link SudokuSolver} to the {@link SudokuEngine} interface, reusing
+ * a single solver instance for every grid.
+ *
+ * @author Totom3
+ */
+class BacktrackingEngine implements SudokuEngine {
+
+	private final SudokuSolver solver;
+
+	BacktrackingEngine() {
+		this.solver = new SudokuSolver();
+		solver.setCellOrdering(SudokuSolver.CellOrdering.MOST_CONSTRAINED);
+		solver.setPropagating(true);
+	}
+
+	@Override
+	public Set<int[]> getSolutions(int[] sudoku, int limit) {
+		solver.reset(sudoku);
+		return solver.getSolutions(limit);
+	}
+
+	@Override
+	public int countSolutions(int[] sudoku, int limit) {
+		solver.reset(sudoku);
+		return solver.countSolutions(limit);
+	}
+}
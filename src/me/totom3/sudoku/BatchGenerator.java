@@ -0,0 +1,372 @@
+package me.totom3.sudoku;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless puzzle factory. Puzzles go through a pipeline of stages (grid
+ * generation, hole digging, optional deduplication and rating,
+ * serialization), each with its own worker threads, connected by bounded
+ * queues so that a slow stage holds back the ones before it. Throughput and
+ * queue occupancy are reported every second, which shows which stage is the
+ * bottleneck.
+ * <p>
+ * Usage: {@code BatchGenerator [--count n] [--holes n] [--seed n]
+ * [--out file] [--grid-workers n] [--dig-workers n] [--dedup-workers n]
+ * [--rate-workers n] [--write-workers n] [--queue-capacity n]}. Deduplication
+ * and rating are skipped when they have no workers. Every puzzle is written on
+ * its own line as its index, the clues (81 characters, {@code .} for holes),
+ * the solution and, if enabled, the rating as the hardest
+ * {@link SudokuRater.Technique technique} needed and the number of steps.
+ * <p>
+ * A puzzle only depends on the seed and its index. Deduplication drops the
+ * puzzles equivalent to one that reached it before, by symmetry or
+ * relabelling, so fewer than {@code count} puzzles may be written. With
+ * several workers in the stages up to deduplication, which of two equivalent
+ * puzzles is kept depends on thread timing and may change between runs.
+ *
+ * @author Totom3
+ */
+public class BatchGenerator {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Options options = Options.parse(args);
+
+		try (Writer writer = Files.newBufferedWriter(Paths.get(options.output), StandardCharsets.US_ASCII)) {
+			new BatchGenerator(options, writer).run();
+		}
+	}
+
+	private static final Job POISON = new Job(-1);
+
+	private final Options options;
+	private final Writer writer;
+	private final AtomicLong nextIndex = new AtomicLong();
+	private final CountDownLatch done = new CountDownLatch(1);
+
+	// The first error thrown by a step; it stops the whole batch
+	private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+	private final Stage[] stages;
+	private final PuzzleDedupIndex dedupIndex;
+
+	private BatchGenerator(Options options, Writer writer) {
+		this.options = options;
+		this.writer = writer;
+
+		this.dedupIndex = (options.dedupWorkers > 0) ? new PuzzleDedupIndex(options.count) : null;
+
+		List<Stage> pipeline = new ArrayList<>();
+		pipeline.add(new Stage("generate", options.gridWorkers, null, this::generateGrid));
+		pipeline.add(new Stage("dig", options.digWorkers, pipeline.get(0), this::digHoles));
+
+		if (options.dedupWorkers > 0)
+			pipeline.add(new Stage("dedup", options.dedupWorkers, pipeline.get(pipeline.size() - 1), this::dedup));
+
+		if (options.rateWorkers > 0)
+			pipeline.add(new Stage("rate", options.rateWorkers, pipeline.get(pipeline.size() - 1), this::rate));
+
+		pipeline.add(new Stage("write", options.writeWorkers, pipeline.get(pipeline.size() - 1), this::write));
+		this.stages = pipeline.toArray(new Stage[0]);
+
+		// Every stage but the last hands its jobs over through a queue
+		for (int i = 0; i < stages.length - 1; ++i)
+			stages[i].output = new ArrayBlockingQueue<>(options.queueCapacity);
+	}
+
+	private void run() throws InterruptedException {
+		stages[stages.length - 1].onFinished = done::countDown;
+
+		ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "batch-reporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		long start = System.nanoTime();
+		for (Stage stage : stages)
+			stage.start();
+
+		reporter.scheduleAtFixedRate(() -> report(start, false), 1, 1, TimeUnit.SECONDS);
+		done.await();
+		reporter.shutdownNow();
+
+		if (failure.get() != null)
+			throw failure.get();
+
+		report(start, true);
+	}
+
+	private void fail(Stage stage, Throwable cause) {
+		if (!failure.compareAndSet(null, new IllegalStateException("Stage " + stage.name + " failed", cause)))
+			return;
+
+		// Workers blocked on a queue would otherwise wait forever
+		for (Stage other : stages) {
+			for (Thread thread : other.threads)
+				thread.interrupt();
+		}
+
+		done.countDown();
+	}
+
+	// Stage work
+	private void generateGrid(Job job) {
+		job.random = SudokuGenerator.randomFor(options.seed, job.index);
+		job.sudoku = SudokuGenerator.generateSudoku(job.random, new int[81]);
+	}
+
+	private void digHoles(Job job) {
+		job.mask = SudokuMaskGenerator.generateMask(job.sudoku, options.holes, job.random);
+	}
+
+	private void dedup(Job job) {
+		job.duplicate = !dedupIndex.addPuzzle(new SudokuPuzzle(job.sudoku, job.mask).getClues());
+	}
+
+	private void rate(Job job) {
+		job.rating = SudokuRater.forCurrentThread().rate(new SudokuPuzzle(job.sudoku, job.mask));
+	}
+
+	private void write(Job job) {
+		StringBuilder line = new StringBuilder(200);
+		line.append(job.index).append(' ');
+		for (int i = 0; i < 81; ++i)
+			line.append(job.mask[i] == 1 ? (char) ('0' + job.sudoku[i]) : '.');
+
+		line.append(' ');
+		for (int i = 0; i < 81; ++i)
+			line.append((char) ('0' + job.sudoku[i]));
+
+		if (options.rateWorkers > 0)
+			line.append(' ').append(job.rating.getHardestTechnique()).append(' ').append(job.rating.getSteps());
+
+		line.append('\n');
+
+		try {
+			synchronized (writer) {
+				writer.write(line.toString());
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private void report(long start, boolean summary) {
+		double seconds = (System.nanoTime() - start) / 1e9;
+		StringBuilder sb = new StringBuilder();
+		sb.append(summary ? "Done in " : "").append(String.format("%.1fs", seconds));
+
+		for (Stage stage : stages) {
+			long processed = stage.processed.sum();
+			sb.append(String.format(" | %s: %d (%.0f/s, busy %.0f%%)", stage.name, processed, processed / seconds,
+					100 * stage.busyNanos.sum() / (stage.workers * seconds * 1e9)));
+
+			if (stage.dropped.sum() > 0)
+				sb.append(String.format(" dropped %d", stage.dropped.sum()));
+
+			if (stage.output != null)
+				sb.append(String.format(" queue %d/%d", stage.output.size(), options.queueCapacity));
+		}
+
+		System.out.println(sb);
+	}
+
+	private interface Step {
+
+		void process(Job job);
+	}
+
+	/**
+	 * A puzzle travelling through the pipeline.
+	 */
+	private static final class Job {
+
+		final long index;
+		SplittableRandom random;
+		int[] sudoku;
+		int[] mask;
+		boolean duplicate;
+		SudokuRater.Rating rating;
+
+		Job(long index) {
+			this.index = index;
+		}
+	}
+
+	private final class Stage {
+
+		final String name;
+		final int workers;
+		final Step step;
+
+		// Null for the first stage, which creates the jobs
+		final Stage upstream;
+		// Null for the last stage
+		BlockingQueue<Job> output;
+		Runnable onFinished;
+
+		final Thread[] threads;
+		final AtomicInteger runningWorkers = new AtomicInteger();
+		final LongAdder processed = new LongAdder();
+		final LongAdder dropped = new LongAdder();
+		final LongAdder busyNanos = new LongAdder();
+
+		Stage(String name, int workers, Stage upstream, Step step) {
+			if (workers < 1)
+				throw new IllegalArgumentException("Stage " + name + " needs at least one worker");
+
+			this.name = name;
+			this.workers = workers;
+			this.upstream = upstream;
+			this.step = step;
+
+			this.threads = new Thread[workers];
+			for (int i = 0; i < workers; ++i) {
+				threads[i] = new Thread(this::work, "batch-" + name + "-" + i);
+				threads[i].setDaemon(true);
+			}
+		}
+
+		void start() {
+			runningWorkers.set(workers);
+			for (Thread thread : threads)
+				thread.start();
+		}
+
+		void work() {
+			try {
+				try {
+					processJobs();
+				} catch (RuntimeException | Error ex) {
+					fail(this, ex);
+					return;
+				}
+
+				// The last worker out tells every downstream worker to stop
+				if (runningWorkers.decrementAndGet() == 0) {
+					if (output != null) {
+						for (Stage stage : stages) {
+							if (stage.upstream == this) {
+								for (int i = 0; i < stage.workers; ++i)
+									output.put(POISON);
+							}
+						}
+					}
+
+					if (onFinished != null)
+						onFinished.run();
+				}
+			} catch (InterruptedException ex) {
+				// Another stage failed
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		void processJobs() throws InterruptedException {
+			while (true) {
+				Job job = nextJob();
+				if (job == POISON)
+					return;
+
+				long t = System.nanoTime();
+				step.process(job);
+				busyNanos.add(System.nanoTime() - t);
+				processed.increment();
+
+				if (job.duplicate) {
+					dropped.increment();
+					continue;
+				}
+
+				if (output != null)
+					output.put(job);
+			}
+		}
+
+		Job nextJob() throws InterruptedException {
+			if (upstream != null)
+				return upstream.output.take();
+
+			long index = nextIndex.getAndIncrement();
+			return (index < options.count) ? new Job(index) : POISON;
+		}
+	}
+
+	private static final class Options {
+
+		long count = 1000;
+		int holes = 50;
+		long seed = System.nanoTime();
+		String output = "puzzles.txt";
+		int gridWorkers = 1;
+		int digWorkers = Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+		int dedupWorkers = 1;
+		int rateWorkers = 1;
+		int writeWorkers = 1;
+		int queueCapacity = 256;
+
+		static Options parse(String[] args) {
+			Options options = new Options();
+			for (int i = 0; i < args.length; i += 2) {
+				if (i + 1 >= args.length)
+					throw new IllegalArgumentException("Missing value for " + args[i]);
+
+				String value = args[i + 1];
+				switch (args[i]) {
+					case "--count":
+						options.count = Long.parseLong(value);
+						break;
+					case "--holes":
+						options.holes = Integer.parseInt(value);
+						break;
+					case "--seed":
+						options.seed = Long.parseLong(value);
+						break;
+					case "--out":
+						options.output = value;
+						break;
+					case "--grid-workers":
+						options.gridWorkers = Integer.parseInt(value);
+						break;
+					case "--dig-workers":
+						options.digWorkers = Integer.parseInt(value);
+						break;
+					case "--dedup-workers":
+						options.dedupWorkers = Integer.parseInt(value);
+						break;
+					case "--rate-workers":
+						options.rateWorkers = Integer.parseInt(value);
+						break;
+					case "--write-workers":
+						options.writeWorkers = Integer.parseInt(value);
+						break;
+					case "--queue-capacity":
+						options.queueCapacity = Integer.parseInt(value);
+						break;
+					default:
+						throw new IllegalArgumentException("Unknown option " + args[i]);
+				}
+			}
+
+			return options;
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package me.totom3.sudoku;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves files of puzzles in the common one-line format: 81 characters per
+ * line, {@code 1}-{@code 9} for clues and {@code 0} or {@code .} for blanks.
+ * Empty lines and lines starting with {@code #} are skipped.
+ * <p>
+ * The input is memory-mapped and cut into chunks at line boundaries; worker
+ * threads parse their chunk's bytes directly into a reused grid and solve it
+ * with their own {@link SudokuSolver}. Results are written in input order:
+ * the solution of every puzzle (the first one found if there are several),
+ * or the line unchanged when it has no solution or is malformed. Throughput,
+ * latency percentiles and the number of unsolvable and ambiguous puzzles are
+ * reported at the end.
+ * <p>
+ * Usage: {@code BulkSolver input output [--threads n] [--chunk-size bytes]}.
+ *
+ * @author Totom3
+ */
+public class BulkSolver {
+
+	public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+		if (args.length < 2) {
+			System.err.println("Usage: BulkSolver input output [--threads n] [--chunk-size bytes]");
+			System.exit(1);
+		}
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		int chunkSize = DEFAULT_CHUNK_SIZE;
+		for (int i = 2; i < args.length; i += 2) {
+			if (i + 1 >= args.length)
+				throw new IllegalArgumentException("Missing value for " + args[i]);
+
+			String value = args[i + 1];
+			switch (args[i]) {
+				case "--threads":
+					threads = Integer.parseInt(value);
+					break;
+				case "--chunk-size":
+					chunkSize = Integer.parseInt(value);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		}
+
+		Result result = solveFile(Paths.get(args[0]), Paths.get(args[1]), threads, chunkSize);
+		System.out.println(result);
+	}
+
+	private static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+	// Lines may run past the end of their chunk by at most this many bytes
+	private static final int MAX_LINE_LENGTH = 1024;
+
+	private BulkSolver() {
+	}
+
+	/**
+	 * Solves every puzzle of {@code input} into {@code output} using the given
+	 * number of worker threads.
+	 */
+	public static Result solveFile(Path input, Path output, int threads, int chunkSize) throws IOException, InterruptedException, ExecutionException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		Result total = new Result();
+		long start = System.nanoTime();
+
+		try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+				OutputStream out = Files.newOutputStream(output)) {
+			long size = channel.size();
+
+			// Keep a bounded number of chunks in flight, writing them in order
+			Deque<Future<Chunk>> pending = new ArrayDeque<>();
+			int maxPending = 4 * threads;
+
+			for (long offset = 0; offset < size; offset += chunkSize) {
+				long chunkStart = offset;
+				long chunkEnd = Math.min(size, offset + chunkSize);
+				long mapEnd = Math.min(size, chunkEnd + MAX_LINE_LENGTH);
+
+				// Mapping one byte early tells whether the chunk starts a line
+				long mapStart = Math.max(0, chunkStart - 1);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+				int from = (int) (chunkStart - mapStart);
+				int to = (int) (chunkEnd - mapStart);
+
+				pending.add(executor.submit(() -> solveChunk(buffer, from, to)));
+				if (pending.size() >= maxPending)
+					writeChunk(pending.poll().get(), out, total);
+			}
+
+			while (!pending.isEmpty())
+				writeChunk(pending.poll().get(), out, total);
+		} finally {
+			executor.shutdown();
+		}
+
+		total.elapsedNanos = System.nanoTime() - start;
+		return total;
+	}
+
+	private static void writeChunk(Chunk chunk, OutputStream out, Result total) throws IOException {
+		out.write(chunk.output, 0, chunk.outputLength);
+		total.add(chunk.result);
+	}
+
+	/**
+	 * Solves every line starting within {@code [from, to)} of the buffer.
+	 */
+	private static Chunk solveChunk(MappedByteBuffer buffer, int from, int to) {
+		SudokuSolver solver = SudokuSolver.forCurrentThread();
+		int[] grid = new int[81];
+		int[] solution = new int[81];
+		Chunk chunk = new Chunk(to - from);
+
+		// Skip the line started by the previous chunk
+		int position = from;
+		if (position > 0 && buffer.get(position - 1) != '\n') {
+			while (position < buffer.limit() && buffer.get(position) != '\n')
+				++position;
+			++position;
+		}
+
+		while (position < to && position < buffer.limit()) {
+			int lineStart = position;
+			int lineEnd = lineStart;
+			while (lineEnd < buffer.limit() && buffer.get(lineEnd) != '\n')
+				++lineEnd;
+
+			if (lineEnd == buffer.limit() && lineEnd - lineStart > MAX_LINE_LENGTH)
+				throw new IllegalStateException("Line longer than " + MAX_LINE_LENGTH + " bytes at chunk offset " + lineStart);
+
+			position = lineEnd + 1;
+
+			int contentEnd = lineEnd;
+			if (contentEnd > lineStart && buffer.get(contentEnd - 1) == '\r')
+				--contentEnd;
+
+			if (contentEnd == lineStart || buffer.get(lineStart) == '#')
+				continue;
+
+			if (!parse(buffer, lineStart, contentEnd, grid)) {
+				++chunk.result.malformed;
+				chunk.copyLine(buffer, lineStart, contentEnd);
+				continue;
+			}
+
+			long t = System.nanoTime();
+			solver.reset(grid);
+			int solutions = solver.countSolutions(2, solution);
+			chunk.result.latencies.record(System.nanoTime() - t);
+
+			if (solutions == 0) {
+				++chunk.result.unsolvable;
+				chunk.copyLine(buffer, lineStart, contentEnd);
+			} else {
+				if (solutions > 1)
+					++chunk.result.multipleSolutions;
+
+				chunk.writeGrid(solution);
+			}
+		}
+
+		return chunk;
+	}
+
+	private static boolean parse(MappedByteBuffer buffer, int from, int to, int[] grid) {
+		if (to - from < 81)
+			return false;
+
+		for (int i = 0; i < 81; ++i) {
+			byte c = buffer.get(from + i);
+			if (c >= '1' && c <= '9')
+				grid[i] = c - '0';
+			else if (c == '0' || c == '.')
+				grid[i] = 0;
+			else
+				return false;
+		}
+
+		// Allow trailing whitespace only
+		for (int i = from + 81; i < to; ++i) {
+			byte c = buffer.get(i);
+			if (c != ' ' && c != '\t')
+				return false;
+		}
+
+		return true;
+	}
+
+	private static final class Chunk {
+
+		byte[] output;
+		int outputLength;
+		final Result result = new Result();
+
+		Chunk(int inputLength) {
+			this.output = new byte[inputLength + 128];
+		}
+
+		void writeGrid(int[] grid) {
+			ensureCapacity(82);
+			for (int i = 0; i < 81; ++i)
+				output[outputLength++] = (byte) ('0' + grid[i]);
+
+			output[outputLength++] = '\n';
+		}
+
+		void copyLine(MappedByteBuffer buffer, int from, int to) {
+			ensureCapacity(to - from + 1);
+			for (int i = from; i < to; ++i)
+				output[outputLength++] = buffer.get(i);
+
+			output[outputLength++] = '\n';
+		}
+
+		void ensureCapacity(int extra) {
+			if (outputLength + extra > output.length)
+				output = Arrays.copyOf(output, Math.max(2 * output.length, outputLength + extra));
+		}
+	}
+
+	/**
+	 * Statistics of a bulk solve.
+	 */
+	public static final class Result {
+
+		long unsolvable;
+		long multipleSolutions;
+		long malformed;
+		long elapsedNanos;
+		final LatencyHistogram latencies = new LatencyHistogram();
+
+		void add(Result other) {
+			unsolvable += other.unsolvable;
+			multipleSolutions += other.multipleSolutions;
+			malformed += other.malformed;
+			latencies.add(other.latencies);
+		}
+
+		public long getPuzzles() {
+			return latencies.getCount();
+		}
+
+		public long getUnsolvable() {
+			return unsolvable;
+		}
+
+		public long getMultipleSolutions() {
+			return multipleSolutions;
+		}
+
+		public long getMalformed() {
+			return malformed;
+		}
+
+		public LatencyHistogram getLatencies() {
+			return latencies;
+		}
+
+		@Override
+		public String toString() {
+			double seconds = elapsedNanos / 1e9;
+			return String.format("%d puzzles in %.2fs (%.0f puzzles/s), latency p50 %.1fus p99 %.1fus max %.1fus; "
+					+ "%d unsolvable, %d with multiple solutions, %d malformed lines",
+					getPuzzles(), seconds, getPuzzles() / seconds,
+					latencies.getPercentile(50) / 1e3, latencies.getPercentile(99) / 1e3, latencies.getMax() / 1e3,
+					unsolvable, multipleSolutions, malformed);
+		}
+	}
+}
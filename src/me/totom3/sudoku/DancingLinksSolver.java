@@ -0,0 +1,252 @@
+package me.totom3.sudoku;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Solves sudokus as an exact cover problem using Knuth's Algorithm X with
+ * dancing links. The matrix has one column per constraint (cell, row-digit,
+ * column-digit and group-digit; 324 in total) and one row per candidate
+ * placement (729 in total).
+ * <p>
+ * The node arena is built once in the constructor. Clues are applied by
+ * covering their rows and removed again by uncovering them in reverse order,
+ * so a single instance can solve any number of grids without allocating a new
+ * matrix.
+ *
+ * @author Totom3
+ */
+public class DancingLinksSolver implements SudokuEngine {
+
+	private static final int CONSTRAINTS = 324;
+	private static final int PLACEMENTS = 729;
+
+	private static final int ROOT = 0;
+	private static final int NODES = 1 + CONSTRAINTS + 4 * PLACEMENTS;
+
+	// Links of the arena. Indices 1 to 324 are the column headers.
+	private final int[] left = new int[NODES];
+	private final int[] right = new int[NODES];
+	private final int[] up = new int[NODES];
+	private final int[] down = new int[NODES];
+	private final int[] header = new int[NODES];
+	private final int[] placement = new int[NODES];
+	private final int[] size = new int[1 + CONSTRAINTS];
+
+	// First node of every placement row, used to apply clues
+	private final int[] placementNodes = new int[PLACEMENTS];
+
+	// Per-call state
+	private final int[] sudoku = new int[81];
+	private final int[] chosenNodes = new int[81];
+	private final int[] clueNodes = new int[81];
+	private Set<int[]> solutions;
+	private int limit;
+	private int solutionCount;
+
+	public DancingLinksSolver() {
+		for (int c = 0; c <= CONSTRAINTS; ++c) {
+			left[c] = (c == 0) ? CONSTRAINTS : c - 1;
+			right[c] = (c == CONSTRAINTS) ? 0 : c + 1;
+			up[c] = c;
+			down[c] = c;
+			header[c] = c;
+		}
+
+		int node = CONSTRAINTS + 1;
+		for (int p = 0; p < PLACEMENTS; ++p) {
+			int cell = p / 9;
+			int digit = p % 9;
+			int row = cell / 9;
+			int column = cell % 9;
+			int group = 3 * (cell / 27) + ((cell / 3) % 3);
+
+			int first = node;
+			placementNodes[p] = first;
+
+			appendNode(node++, 1 + cell, p, first);
+			appendNode(node++, 1 + 81 + 9 * row + digit, p, first);
+			appendNode(node++, 1 + 162 + 9 * column + digit, p, first);
+			appendNode(node++, 1 + 243 + 9 * group + digit, p, first);
+		}
+	}
+
+	private void appendNode(int node, int column, int p, int first) {
+		header[node] = column;
+		placement[node] = p;
+
+		// Insert at the bottom of the column
+		up[node] = up[column];
+		down[node] = column;
+		down[up[column]] = node;
+		up[column] = node;
+		++size[column];
+
+		// Insert at the end of the row
+		if (node == first) {
+			left[node] = node;
+			right[node] = node;
+		} else {
+			left[node] = left[first];
+			right[node] = first;
+			right[left[first]] = node;
+			left[first] = node;
+		}
+	}
+
+	@Override
+	public Set<int[]> getSolutions(int[] sudoku, int limit) {
+		Set<int[]> result = new HashSet<>();
+		this.solutions = result;
+		solve(sudoku, limit);
+		this.solutions = null;
+		return result;
+	}
+
+	@Override
+	public int countSolutions(int[] sudoku, int limit) {
+		return solve(sudoku, limit);
+	}
+
+	/**
+	 * Applies the clues, searches and restores the matrix. Solutions are
+	 * saved only when a solution set has been installed.
+	 */
+	private int solve(int[] sudoku, int limit) {
+		this.limit = limit;
+		this.solutionCount = 0;
+		System.arraycopy(sudoku, 0, this.sudoku, 0, 81);
+
+		int clues = 0;
+		boolean valid = true;
+		for (int cell = 0; cell < 81; ++cell) {
+			int digit = sudoku[cell];
+			if (digit == 0)
+				continue;
+
+			int node = placementNodes[9 * cell + digit - 1];
+			if (!isRowAvailable(node)) {
+				// Two clues compete for the same constraint
+				valid = false;
+				break;
+			}
+
+			coverRow(node);
+			clueNodes[clues++] = node;
+		}
+
+		if (valid)
+			search(0);
+
+		while (clues > 0)
+			uncoverRow(clueNodes[--clues]);
+
+		return solutionCount;
+	}
+
+	private boolean search(int depth) {
+		if (right[ROOT] == ROOT) {
+			++solutionCount;
+			if (solutions != null)
+				saveSolution(depth);
+
+			return limit >= 1 && solutionCount >= limit;
+		}
+
+		// Branch on the constraint with the fewest remaining placements
+		int column = right[ROOT];
+		for (int c = right[column]; c != ROOT; c = right[c]) {
+			if (size[c] < size[column])
+				column = c;
+		}
+
+		// Branch is dead; stop here.
+		if (size[column] == 0)
+			return false;
+
+		cover(column);
+
+		boolean done = false;
+		for (int node = down[column]; node != column && !done; node = down[node]) {
+			chosenNodes[depth] = node;
+
+			for (int j = right[node]; j != node; j = right[j])
+				cover(header[j]);
+
+			done = search(depth + 1);
+
+			for (int j = left[node]; j != node; j = left[j])
+				uncover(header[j]);
+		}
+
+		uncover(column);
+		return done;
+	}
+
+	private void saveSolution(int depth) {
+		int[] solution = new int[81];
+		System.arraycopy(sudoku, 0, solution, 0, 81);
+
+		for (int i = 0; i < depth; ++i) {
+			int p = placement[chosenNodes[i]];
+			solution[p / 9] = p % 9 + 1;
+		}
+
+		solutions.add(solution);
+	}
+
+	private boolean isRowAvailable(int node) {
+		int j = node;
+		do {
+			int column = header[j];
+			if (right[left[column]] != column)
+				return false;
+
+			j = right[j];
+		} while (j != node);
+
+		return true;
+	}
+
+	private void coverRow(int node) {
+		int j = node;
+		do {
+			cover(header[j]);
+			j = right[j];
+		} while (j != node);
+	}
+
+	private void uncoverRow(int node) {
+		int j = node;
+		do {
+			j = left[j];
+			uncover(header[j]);
+		} while (j != node);
+	}
+
+	private void cover(int column) {
+		right[left[column]] = right[column];
+		left[right[column]] = left[column];
+
+		for (int i = down[column]; i != column; i = down[i]) {
+			for (int j = right[i]; j != i; j = right[j]) {
+				down[up[j]] = down[j];
+				up[down[j]] = up[j];
+				--size[header[j]];
+			}
+		}
+	}
+
+	private void uncover(int column) {
+		for (int i = up[column]; i != column; i = up[i]) {
+			for (int j = left[i]; j != i; j = left[j]) {
+				++size[header[j]];
+				down[up[j]] = j;
+				up[down[j]] = j;
+			}
+		}
+
+		right[left[column]] = column;
+		left[right[column]] = column;
+	}
+}
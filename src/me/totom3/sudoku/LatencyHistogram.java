@@ -0,0 +1,86 @@
+package me.totom3.sudoku;
+
+/**
+ * Histogram of durations in nanoseconds, with buckets growing exponentially
+ * so that any recorded value is known to within about 6%. Recording is a
+ * couple of bit operations and an array increment. Instances are not
+ * thread-safe; give each thread its own and {@link #add(LatencyHistogram)
+ * merge} them afterwards.
+ *
+ * @author Totom3
+ */
+public class LatencyHistogram {
+
+	// Each power of two is split into 16 linear sub-buckets
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long totalCount;
+	private long max;
+
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+
+		++counts[bucketOf(nanos)];
+		++totalCount;
+		if (nanos > max)
+			max = nanos;
+	}
+
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; ++i)
+			counts[i] += other.counts[i];
+
+		totalCount += other.totalCount;
+		max = Math.max(max, other.max);
+	}
+
+	public long getCount() {
+		return totalCount;
+	}
+
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Returns the smallest recorded value (rounded down to its bucket) such
+	 * that {@code percentile}% of the values are no greater, or 0 when nothing
+	 * was recorded.
+	 */
+	public long getPercentile(double percentile) {
+		if (totalCount == 0)
+			return 0;
+
+		long rank = (long) Math.ceil(totalCount * percentile / 100);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; ++i) {
+			seen += counts[i];
+			if (seen >= rank && counts[i] > 0)
+				return Math.min(lowerBoundOf(i), max);
+		}
+
+		return max;
+	}
+
+	private static int bucketOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	private static long lowerBoundOf(int bucket) {
+		if (bucket < SUB_BUCKETS)
+			return bucket;
+
+		int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		long subBucket = bucket % SUB_BUCKETS;
+		return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+	}
+}
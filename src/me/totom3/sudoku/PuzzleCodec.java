@@ -0,0 +1,89 @@
+package me.totom3.sudoku;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Packs a 9x9 {@link SudokuPuzzle} into {@value #PUZZLE_BYTES} bytes: the 81
+ * digits of the solution at 4 bits each, two per byte with the first cell in
+ * the high nibble, followed by the 81-bit clue mask, least significant bit
+ * first. The unused low nibble of byte 40 and the 7 unused bits of the last
+ * byte are zero.
+ * <p>
+ * The methods work on absolute positions and leave the buffers' positions
+ * untouched, so they can be used on shared mapped buffers.
+ *
+ * @author Totom3
+ */
+public final class PuzzleCodec {
+
+	public static final int PUZZLE_BYTES = 52;
+
+	private static final int DIGIT_BYTES = 41;
+	private static final int MASK_BYTES = 11;
+
+	private PuzzleCodec() {
+	}
+
+	public static byte[] encode(SudokuPuzzle puzzle) {
+		byte[] bytes = new byte[PUZZLE_BYTES];
+		encode(puzzle.getSolution(), puzzle.getMask(), ByteBuffer.wrap(bytes), 0);
+		return bytes;
+	}
+
+	/**
+	 * Writes the encoding of a puzzle at {@code offset} in {@code buffer}.
+	 */
+	public static void encode(int[] solution, int[] mask, ByteBuffer buffer, int offset) {
+		if (solution.length != 81 || mask.length != 81)
+			throw new IllegalArgumentException("Only 9x9 puzzles can be encoded");
+
+		for (int i = 0; i < DIGIT_BYTES; ++i) {
+			int high = solution[2 * i];
+			int low = (2 * i + 1 < 81) ? solution[2 * i + 1] : 0;
+			if (high < 1 || high > 9 || (2 * i + 1 < 81 && (low < 1 || low > 9)))
+				throw new IllegalArgumentException("Solution must be a full grid");
+
+			buffer.put(offset + i, (byte) (high << 4 | low));
+		}
+
+		for (int i = 0; i < MASK_BYTES; ++i) {
+			int bits = 0;
+			for (int bit = 0; bit < 8 && 8 * i + bit < 81; ++bit) {
+				if (mask[8 * i + bit] == 1)
+					bits |= 1 << bit;
+			}
+
+			buffer.put(offset + DIGIT_BYTES + i, (byte) bits);
+		}
+	}
+
+	public static SudokuPuzzle decode(byte[] bytes) {
+		return decode(ByteBuffer.wrap(bytes), 0);
+	}
+
+	public static SudokuPuzzle decode(ByteBuffer buffer, int offset) {
+		int[] solution = new int[81];
+		int[] mask = new int[81];
+		decode(buffer, offset, solution, mask);
+		return new SudokuPuzzle(solution, mask);
+	}
+
+	/**
+	 * Reads the puzzle encoded at {@code offset} into the given arrays, which
+	 * lets callers walking through many puzzles reuse them.
+	 */
+	public static void decode(ByteBuffer buffer, int offset, int[] solution, int[] mask) {
+		for (int i = 0; i < DIGIT_BYTES; ++i) {
+			int b = buffer.get(offset + i);
+			solution[2 * i] = (b >>> 4) & 0xF;
+			if (2 * i + 1 < 81)
+				solution[2 * i + 1] = b & 0xF;
+		}
+
+		for (int i = 0; i < MASK_BYTES; ++i) {
+			int bits = buffer.get(offset + DIGIT_BYTES + i);
+			for (int bit = 0; bit < 8 && 8 * i + bit < 81; ++bit)
+				mask[8 * i + bit] = (bits >>> bit) & 1;
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package me.totom3.sudoku;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Set of puzzle fingerprints, for telling whether an equivalent puzzle was
+ * seen before. Puzzles are keyed by the {@link SudokuCanonicalizer#fingerprint
+ * fingerprint} of their canonical form, so two puzzles whose fingerprints
+ * collide are taken for the same one.
+ * <p>
+ * The fingerprints live in open-addressing tables of {@code long}s held in
+ * direct buffers, 8 bytes per slot and nothing per key on the Java heap, so
+ * tens of millions of them fit in a few hundred megabytes. The set is split
+ * into segments chosen by the high bits of the fingerprint, each with its own
+ * lock and growing on its own, so threads adding puzzles rarely wait for each
+ * other.
+ *
+ * @author Totom3
+ */
+public class PuzzleDedupIndex {
+
+	private static final int DEFAULT_SEGMENTS = 64;
+
+	// Slots hold 0 when empty, so fingerprint 0 is stored as this instead
+	private static final long ZERO_FINGERPRINT = 0x5DEECE66DL;
+
+	private final Segment[] segments;
+	private final int segmentShift;
+
+	public PuzzleDedupIndex(long expectedPuzzles) {
+		this(expectedPuzzles, DEFAULT_SEGMENTS);
+	}
+
+	/**
+	 * Creates an index sized for the given number of puzzles, which it can
+	 * outgrow. The number of segments is rounded up to a power of two.
+	 */
+	public PuzzleDedupIndex(long expectedPuzzles, int segmentCount) {
+		if (expectedPuzzles < 0)
+			throw new IllegalArgumentException("Expected puzzles must not be negative");
+
+		if (segmentCount < 1 || segmentCount > (1 << 16))
+			throw new IllegalArgumentException("Segment count must be between 1 and 65536");
+
+		int segmentBits = 32 - Integer.numberOfLeadingZeros(segmentCount - 1);
+		this.segments = new Segment[1 << segmentBits];
+		this.segmentShift = 64 - segmentBits;
+
+		long perSegment = expectedPuzzles / segments.length + 1;
+		for (int i = 0; i < segments.length; ++i)
+			segments[i] = new Segment(Segment.capacityFor(perSegment));
+	}
+
+	/**
+	 * Canonicalizes a 9x9 puzzle and adds it, returning whether it was new.
+	 */
+	public boolean addPuzzle(int[] clues) {
+		return add(SudokuCanonicalizer.fingerprint(SudokuCanonicalizer.forCurrentThread().canonicalize(clues)));
+	}
+
+	/**
+	 * Adds a fingerprint, and returns whether it was not in the index yet.
+	 */
+	public boolean add(long fingerprint) {
+		if (fingerprint == 0)
+			fingerprint = ZERO_FINGERPRINT;
+
+		return segmentFor(fingerprint).add(fingerprint);
+	}
+
+	public boolean contains(long fingerprint) {
+		if (fingerprint == 0)
+			fingerprint = ZERO_FINGERPRINT;
+
+		return segmentFor(fingerprint).contains(fingerprint);
+	}
+
+	public long size() {
+		long size = 0;
+		for (Segment segment : segments)
+			size += segment.size();
+
+		return size;
+	}
+
+	/**
+	 * Returns the off-heap memory taken by the tables, in bytes.
+	 */
+	public long getMemoryUsage() {
+		long bytes = 0;
+		for (Segment segment : segments)
+			bytes += segment.getMemoryUsage();
+
+		return bytes;
+	}
+
+	private Segment segmentFor(long fingerprint) {
+		// segmentShift is 64 for a single segment, which Java reads as 0
+		return (segments.length == 1) ? segments[0] : segments[(int) (fingerprint >>> segmentShift)];
+	}
+
+	private static final class Segment {
+
+		// Slots per buffer, which is then 1 GB; direct buffers stop at 2 GB
+		private static final int MAX_CAPACITY = 1 << 27;
+
+		static int capacityFor(long keys) {
+			// Keep the load under 3/4
+			long slots = Math.max(16, keys + keys / 3 + 1);
+			if (slots > MAX_CAPACITY)
+				return MAX_CAPACITY;
+
+			return Integer.highestOneBit((int) slots - 1) << 1;
+		}
+
+		private ByteBuffer table;
+		private int capacity;
+		private int size;
+
+		Segment(int capacity) {
+			this.table = ByteBuffer.allocateDirect(8 * capacity);
+			this.capacity = capacity;
+		}
+
+		synchronized boolean add(long fingerprint) {
+			int slot = find(table, capacity, fingerprint);
+			if (table.getLong(8 * slot) != 0)
+				return false;
+
+			if (size + 1 > capacity - capacity / 4) {
+				grow();
+				slot = find(table, capacity, fingerprint);
+			}
+
+			table.putLong(8 * slot, fingerprint);
+			++size;
+			return true;
+		}
+
+		synchronized boolean contains(long fingerprint) {
+			return table.getLong(8 * find(table, capacity, fingerprint)) != 0;
+		}
+
+		synchronized int size() {
+			return size;
+		}
+
+		synchronized long getMemoryUsage() {
+			return 8L * capacity;
+		}
+
+		/**
+		 * Returns the slot holding the fingerprint, or the empty slot where it
+		 * belongs. The low bits pick the first slot; the high ones already
+		 * picked the segment.
+		 */
+		private static int find(ByteBuffer table, int capacity, long fingerprint) {
+			int mask = capacity - 1;
+			int slot = (int) fingerprint & mask;
+			while (true) {
+				long stored = table.getLong(8 * slot);
+				if (stored == 0 || stored == fingerprint)
+					return slot;
+
+				slot = (slot + 1) & mask;
+			}
+		}
+
+		private void grow() {
+			if (capacity == MAX_CAPACITY)
+				throw new IllegalStateException("Index segment is full");
+
+			int newCapacity = 2 * capacity;
+			ByteBuffer newTable = ByteBuffer.allocateDirect(8 * newCapacity);
+			for (int slot = 0; slot < capacity; ++slot) {
+				long fingerprint = table.getLong(8 * slot);
+				if (fingerprint != 0)
+					newTable.putLong(8 * find(newTable, newCapacity, fingerprint), fingerprint);
+			}
+
+			// The old buffer is freed once collected
+			table = newTable;
+			capacity = newCapacity;
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package me.totom3.sudoku;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keeps a stock of ready-made puzzles so that handing one out never waits for
+ * generation. Background workers fill the pool up to its high watermark and
+ * then sleep; they wake up again once taking puzzles brings it down to the low
+ * watermark. The workers are daemon threads running at minimum priority, so
+ * they never hold back the UI or the JVM's exit.
+ * <p>
+ * The pool can be {@link #save saved} to a {@link PuzzleStore} file and
+ * {@link #load loaded} back, so the next run starts with puzzles in stock.
+ *
+ * @author Totom3
+ */
+public class PuzzlePool {
+
+	// Pause after a failed generation, so that a persistent failure does not spin
+	private static final long FAILURE_BACKOFF_MS = 1_000;
+
+	private final int holes;
+	private final int lowWatermark;
+	private final int highWatermark;
+	private final BlockingQueue<SudokuPuzzle> puzzles;
+	private final Thread[] workers;
+
+	private volatile SudokuEngineType engineType = SudokuEngineType.BACKTRACKING;
+	private volatile boolean closed;
+
+	// Guarded by this
+	private boolean refilling = true;
+
+	public PuzzlePool(int holes, int lowWatermark, int highWatermark, int workers) {
+		if (lowWatermark < 0 || highWatermark < 1 || lowWatermark >= highWatermark)
+			throw new IllegalArgumentException("Need 0 <= lowWatermark < highWatermark");
+
+		if (workers < 1)
+			throw new IllegalArgumentException("Need at least one worker");
+
+		this.holes = holes;
+		this.lowWatermark = lowWatermark;
+		this.highWatermark = highWatermark;
+		this.puzzles = new ArrayBlockingQueue<>(highWatermark);
+
+		this.workers = new Thread[workers];
+		for (int i = 0; i < workers; ++i) {
+			Thread thread = new Thread(this::refill, "puzzle-pool-" + i);
+			thread.setDaemon(true);
+			thread.setPriority(Thread.MIN_PRIORITY);
+			this.workers[i] = thread;
+		}
+	}
+
+	/**
+	 * Starts the background workers. Puzzles added with {@link #offer} before
+	 * this count towards the high watermark.
+	 */
+	public PuzzlePool start() {
+		for (Thread worker : workers)
+			worker.start();
+
+		return this;
+	}
+
+	/**
+	 * Returns a pooled puzzle, or {@code null} if the pool is empty. Never
+	 * blocks.
+	 */
+	public SudokuPuzzle poll() {
+		SudokuPuzzle puzzle = puzzles.poll();
+		if (puzzles.size() <= lowWatermark)
+			startRefill();
+
+		return puzzle;
+	}
+
+	/**
+	 * Returns a pooled puzzle if there is one, otherwise generates one on
+	 * another thread.
+	 */
+	public CompletableFuture<SudokuPuzzle> take() {
+		SudokuPuzzle puzzle = poll();
+		if (puzzle != null)
+			return CompletableFuture.completedFuture(puzzle);
+
+		return CompletableFuture.supplyAsync(this::generate);
+	}
+
+	/**
+	 * Adds a puzzle made elsewhere, returning {@code false} if the pool is
+	 * full.
+	 */
+	public boolean offer(SudokuPuzzle puzzle) {
+		return puzzles.offer(puzzle);
+	}
+
+	/**
+	 * Adds the puzzles saved in {@code path} with the pool's number of holes,
+	 * as long as there is room. Returns how many were added; a missing file
+	 * adds none.
+	 */
+	public int load(Path path) throws IOException {
+		if (!Files.exists(path))
+			return 0;
+
+		int loaded = 0;
+		try (PuzzleStore store = new PuzzleStore(path)) {
+			for (long i = 0; i < store.size() && puzzles.remainingCapacity() > 0; ++i) {
+				SudokuPuzzle puzzle = store.get(i);
+				if (puzzle.getNumberOfHoles() == holes && puzzles.offer(puzzle))
+					++loaded;
+			}
+		}
+
+		return loaded;
+	}
+
+	/**
+	 * Writes the pooled puzzles to {@code path}, replacing its content. The
+	 * puzzles stay in the pool.
+	 */
+	public void save(Path path) throws IOException {
+		if (path.getParent() != null)
+			Files.createDirectories(path.getParent());
+
+		// Write aside first so that a crash never leaves a truncated pool
+		Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+		Files.deleteIfExists(temp);
+		try (PuzzleStoreWriter writer = new PuzzleStoreWriter(temp)) {
+			for (SudokuPuzzle puzzle : puzzles)
+				writer.append(puzzle);
+		}
+
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public int size() {
+		return puzzles.size();
+	}
+
+	/**
+	 * Sets the engine used to check puzzles generated from now on.
+	 */
+	public void setEngineType(SudokuEngineType engineType) {
+		this.engineType = engineType;
+	}
+
+	public void close() {
+		closed = true;
+		for (Thread worker : workers)
+			worker.interrupt();
+	}
+
+	private synchronized void startRefill() {
+		if (!refilling) {
+			refilling = true;
+			notifyAll();
+		}
+	}
+
+	private synchronized void awaitRefill() throws InterruptedException {
+		while (!refilling)
+			wait();
+	}
+
+	private synchronized void stopRefill() {
+		// Checked under the lock, so that a poll draining the pool after the
+		// caller's check still gets its refill
+		if (puzzles.size() >= highWatermark)
+			refilling = false;
+	}
+
+	private void refill() {
+		try {
+			while (!closed) {
+				awaitRefill();
+
+				try {
+					// The puzzle is dropped if other workers filled the pool meanwhile
+					puzzles.offer(generate());
+				} catch (RuntimeException ex) {
+					// Keep the worker alive, or the pool would never refill again
+					System.err.println("Could not generate a pooled puzzle: " + ex);
+					Thread.sleep(FAILURE_BACKOFF_MS);
+					continue;
+				}
+
+				if (puzzles.size() >= highWatermark)
+					stopRefill();
+			}
+		} catch (InterruptedException ex) {
+			// Closed
+		}
+	}
+
+	private SudokuPuzzle generate() {
+		int[] sudoku = SudokuGenerator.generateSudoku();
+		int[] mask = SudokuMaskGenerator.generateMask(sudoku, holes, engineType);
+		return new SudokuPuzzle(sudoku, mask);
+	}
+}
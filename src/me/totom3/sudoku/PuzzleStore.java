@@ -0,0 +1,118 @@
+package me.totom3.sudoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Random access to a file of puzzles written by {@link PuzzleStoreWriter}.
+ * The file is a {@value #HEADER_BYTES}-byte header followed by fixed-size
+ * {@link PuzzleCodec} records, so puzzle {@code i} lives at a known offset.
+ * The file is memory-mapped in regions of up to {@value #REGION_PUZZLES}
+ * puzzles (a single mapping cannot exceed 2 GB); nothing is read until a
+ * puzzle is asked for, and the pages belong to the OS cache rather than the
+ * heap.
+ * <p>
+ * The store sees the puzzles present when it was opened. Reads do not move
+ * any buffer position, so a store can be shared by any number of threads.
+ *
+ * @author Totom3
+ */
+public class PuzzleStore implements Closeable {
+
+	static final int MAGIC = 0x53444B50; // "SDKP"
+	static final short VERSION = 1;
+	static final int HEADER_BYTES = 16;
+
+	private static final int REGION_PUZZLES = 1 << 24;
+
+	private final FileChannel channel;
+	private final MappedByteBuffer[] regions;
+	private final long size;
+
+	public PuzzleStore(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+		try {
+			readHeader(channel);
+
+			// A partially written last record is ignored
+			this.size = (channel.size() - HEADER_BYTES) / PuzzleCodec.PUZZLE_BYTES;
+
+			int numberOfRegions = (int) ((size + REGION_PUZZLES - 1) / REGION_PUZZLES);
+			this.regions = new MappedByteBuffer[numberOfRegions];
+			for (int r = 0; r < numberOfRegions; ++r) {
+				long first = (long) r * REGION_PUZZLES;
+				long count = Math.min(REGION_PUZZLES, size - first);
+				regions[r] = channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_BYTES + first * PuzzleCodec.PUZZLE_BYTES, count * PuzzleCodec.PUZZLE_BYTES);
+			}
+		} catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Checks the header of a store file, leaving the channel's position
+	 * untouched.
+	 */
+	static void readHeader(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		while (header.hasRemaining()) {
+			if (channel.read(header, header.position()) < 0)
+				throw new IOException("Not a puzzle store: file too short");
+		}
+
+		if (header.getInt(0) != MAGIC)
+			throw new IOException("Not a puzzle store: bad magic number");
+
+		if (header.getShort(4) != VERSION)
+			throw new IOException("Unsupported puzzle store version " + header.getShort(4));
+
+		if (header.getShort(6) != PuzzleCodec.PUZZLE_BYTES)
+			throw new IOException("Unexpected puzzle size " + header.getShort(6));
+	}
+
+	static ByteBuffer newHeader() {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		header.putInt(0, MAGIC);
+		header.putShort(4, VERSION);
+		header.putShort(6, (short) PuzzleCodec.PUZZLE_BYTES);
+		return header;
+	}
+
+	public long size() {
+		return size;
+	}
+
+	public SudokuPuzzle get(long index) {
+		checkIndex(index);
+		return PuzzleCodec.decode(regions[(int) (index / REGION_PUZZLES)],
+				(int) (index % REGION_PUZZLES) * PuzzleCodec.PUZZLE_BYTES);
+	}
+
+	/**
+	 * Reads puzzle {@code index} into the given arrays without allocating.
+	 */
+	public void read(long index, int[] solution, int[] mask) {
+		checkIndex(index);
+		PuzzleCodec.decode(regions[(int) (index / REGION_PUZZLES)],
+				(int) (index % REGION_PUZZLES) * PuzzleCodec.PUZZLE_BYTES, solution, mask);
+	}
+
+	private void checkIndex(long index) {
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Puzzle " + index + " of " + size);
+	}
+
+	@Override
+	public void close() throws IOException {
+		// The mappings stay valid until they are garbage collected
+		channel.close();
+	}
+}
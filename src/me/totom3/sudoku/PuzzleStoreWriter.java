@@ -0,0 +1,85 @@
+package me.totom3.sudoku;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends puzzles to a {@link PuzzleStore} file, creating it if needed.
+ * Puzzles are encoded into a direct buffer and written in batches. If the
+ * file ends with a partial record (an earlier writer died mid-write), that
+ * record is dropped before appending. Not thread-safe.
+ *
+ * @author Totom3
+ */
+public class PuzzleStoreWriter implements Closeable {
+
+	private static final int BATCH_PUZZLES = 4096;
+
+	private final FileChannel channel;
+	private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_PUZZLES * PuzzleCodec.PUZZLE_BYTES);
+	private long size;
+
+	public PuzzleStoreWriter(Path path) throws IOException {
+		this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try {
+			if (channel.size() == 0) {
+				ByteBuffer header = PuzzleStore.newHeader();
+				while (header.hasRemaining())
+					channel.write(header);
+			} else {
+				PuzzleStore.readHeader(channel);
+			}
+
+			this.size = (channel.size() - PuzzleStore.HEADER_BYTES) / PuzzleCodec.PUZZLE_BYTES;
+			long end = PuzzleStore.HEADER_BYTES + size * PuzzleCodec.PUZZLE_BYTES;
+			channel.truncate(end);
+			channel.position(end);
+		} catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	public void append(SudokuPuzzle puzzle) throws IOException {
+		append(puzzle.getSolution(), puzzle.getMask());
+	}
+
+	public void append(int[] solution, int[] mask) throws IOException {
+		if (!batch.hasRemaining())
+			flush();
+
+		PuzzleCodec.encode(solution, mask, batch, batch.position());
+		batch.position(batch.position() + PuzzleCodec.PUZZLE_BYTES);
+		++size;
+	}
+
+	/**
+	 * Returns the number of puzzles in the file, including those not flushed
+	 * yet.
+	 */
+	public long size() {
+		return size;
+	}
+
+	public void flush() throws IOException {
+		batch.flip();
+		while (batch.hasRemaining())
+			channel.write(batch);
+
+		batch.clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			channel.close();
+		}
+	}
+}
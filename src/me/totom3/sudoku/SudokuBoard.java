@@ -0,0 +1,208 @@
+package me.totom3.sudoku;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The state of a game being played: the clues and the digits entered by the
+ * player. For every row, column and group the board counts how often each
+ * digit appears, as well as the number of (unit, digit) pairs appearing more
+ * than once, so changing a digit, asking whether a cell conflicts and asking
+ * whether the board is complete all take constant time. The board takes the
+ * {@link SudokuGeometry} of the last clues it loaded.
+ * <p>
+ * The board knows nothing about Swing; views register a {@link Listener} and
+ * refresh what changed.
+ *
+ * @author Totom3
+ */
+public class SudokuBoard {
+
+	/**
+	 * Receives the changes made to a board.
+	 */
+	public interface Listener {
+
+		/**
+		 * Called after a cell changed. Its peers holding {@code oldDigit} or
+		 * {@code newDigit} may have started or stopped conflicting as well.
+		 */
+		void cellChanged(int cell, int oldDigit, int newDigit);
+
+		/**
+		 * Called after a new set of clues was loaded.
+		 */
+		void boardLoaded();
+	}
+
+	private SudokuGeometry geometry;
+	private int[] digits;
+	private boolean[] given;
+
+	// Occurrences of every digit in every unit. Usage: counts[(side + 1) * unit + digit]
+	private int[] rowCounts;
+	private int[] columnCounts;
+	private int[] groupCounts;
+
+	private int filledCells;
+	private int duplicates;
+
+	private final List<Listener> listeners = new ArrayList<>();
+
+	/**
+	 * Creates an empty 9x9 board.
+	 */
+	public SudokuBoard() {
+		allocate(SudokuGeometry.STANDARD);
+	}
+
+	private void allocate(SudokuGeometry geometry) {
+		int side = geometry.getSide();
+		this.geometry = geometry;
+		this.digits = new int[geometry.getCells()];
+		this.given = new boolean[geometry.getCells()];
+		this.rowCounts = new int[side * (side + 1)];
+		this.columnCounts = new int[side * (side + 1)];
+		this.groupCounts = new int[side * (side + 1)];
+	}
+
+	public SudokuGeometry getGeometry() {
+		return geometry;
+	}
+
+	public void addListener(Listener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Clears the board and places the given clues. Zero means an empty cell.
+	 * The geometry is deduced from the number of cells.
+	 */
+	public void load(int[] clues) {
+		SudokuGeometry newGeometry = SudokuGeometry.forCells(clues.length);
+		if (newGeometry != geometry) {
+			allocate(newGeometry);
+		} else {
+			Arrays.fill(rowCounts, 0);
+			Arrays.fill(columnCounts, 0);
+			Arrays.fill(groupCounts, 0);
+		}
+
+		filledCells = 0;
+		duplicates = 0;
+
+		for (int cell = 0; cell < clues.length; ++cell) {
+			digits[cell] = 0;
+			given[cell] = (clues[cell] != 0);
+			if (given[cell])
+				add(cell, clues[cell]);
+		}
+
+		for (Listener listener : listeners)
+			listener.boardLoaded();
+	}
+
+	/**
+	 * Enters a digit in a cell, or clears it if {@code digit} is zero. Clues
+	 * cannot be changed.
+	 */
+	public void setDigit(int cell, int digit) {
+		if (digit < 0 || digit > geometry.getSide())
+			throw new IllegalArgumentException("Invalid digit " + digit);
+
+		if (given[cell])
+			throw new IllegalStateException("Cell " + cell + " is a clue");
+
+		int oldDigit = digits[cell];
+		if (oldDigit == digit)
+			return;
+
+		if (oldDigit != 0)
+			remove(cell, oldDigit);
+
+		if (digit != 0)
+			add(cell, digit);
+
+		for (Listener listener : listeners)
+			listener.cellChanged(cell, oldDigit, digit);
+	}
+
+	public int getDigit(int cell) {
+		return digits[cell];
+	}
+
+	public boolean isGiven(int cell) {
+		return given[cell];
+	}
+
+	/**
+	 * Returns whether the digit of a cell also appears elsewhere in its row,
+	 * column or group.
+	 */
+	public boolean isConflicting(int cell) {
+		int digit = digits[cell];
+		if (digit == 0)
+			return false;
+
+		return rowCounts[rowIndex(cell, digit)] > 1
+				|| columnCounts[columnIndex(cell, digit)] > 1
+				|| groupCounts[groupIndex(cell, digit)] > 1;
+	}
+
+	public boolean hasConflicts() {
+		return duplicates > 0;
+	}
+
+	/**
+	 * Returns whether every cell is filled without conflicts, that is the
+	 * board holds a valid solution of its clues.
+	 */
+	public boolean isComplete() {
+		return filledCells == digits.length && duplicates == 0;
+	}
+
+	private void add(int cell, int digit) {
+		digits[cell] = digit;
+		++filledCells;
+
+		if (++rowCounts[rowIndex(cell, digit)] == 2)
+			++duplicates;
+
+		if (++columnCounts[columnIndex(cell, digit)] == 2)
+			++duplicates;
+
+		if (++groupCounts[groupIndex(cell, digit)] == 2)
+			++duplicates;
+	}
+
+	private void remove(int cell, int digit) {
+		digits[cell] = 0;
+		--filledCells;
+
+		if (--rowCounts[rowIndex(cell, digit)] == 1)
+			--duplicates;
+
+		if (--columnCounts[columnIndex(cell, digit)] == 1)
+			--duplicates;
+
+		if (--groupCounts[groupIndex(cell, digit)] == 1)
+			--duplicates;
+	}
+
+	private int rowIndex(int cell, int digit) {
+		return (geometry.getSide() + 1) * geometry.getRow(cell) + digit;
+	}
+
+	private int columnIndex(int cell, int digit) {
+		return (geometry.getSide() + 1) * geometry.getColumn(cell) + digit;
+	}
+
+	private int groupIndex(int cell, int digit) {
+		return (geometry.getSide() + 1) * geometry.getBox(cell) + digit;
+	}
+}
@@ -0,0 +1,366 @@
+package me.totom3.sudoku;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import javax.swing.JComponent;
+
+/**
+ * Draws a {@link SudokuBoard} as a single component and lets the player edit
+ * it with the mouse and keyboard. Every cell has a background colour set by
+ * the owner (to show checked answers) and can be locked against edits. When
+ * a cell changes only its rectangle, and those of the peers whose conflict
+ * state may have changed, are repainted.
+ * <p>
+ * Boards of any {@link SudokuGeometry} are drawn in the same space. Digits
+ * above 9 are shown and typed as letters, {@code A} standing for 10.
+ *
+ * @author Totom3
+ */
+public class SudokuBoardView extends JComponent implements SudokuBoard.Listener {
+
+	private static final long serialVersionUID = 1L;
+
+	static final Color CELL_BACKGROUND = Color.WHITE;
+	static final Color CELL_BACKGROUND_SELECTED = new Color(180, 219, 255);
+	static final Color CELL_BACKGROUND_CORRECT = new Color(117, 255, 117);
+	static final Color CELL_BACKGROUND_INCORRECT = new Color(255, 117, 117);
+	static final Color CELL_FOREGROUND = Color.BLACK;
+	static final Color CELL_FOREGROUND_CONFLICT = new Color(210, 0, 0);
+
+	private static final Dimension PREFERRED_SIZE = new Dimension(452, 452);
+
+	private static final int NONE = -1;
+
+	private final SudokuBoard board;
+	private SudokuGeometry geometry;
+	private Color[] backgrounds;
+	private boolean[] locked;
+
+	private int selectedCell = NONE;
+	private boolean interactive = true;
+
+	// Fonts are derived from the cell size, which only changes on resize
+	private int fontCellSize;
+	private Font plainFont, boldFont;
+
+	public SudokuBoardView(SudokuBoard board) {
+		this.board = board;
+		board.addListener(this);
+
+		resetCells();
+		setFocusable(true);
+		setOpaque(true);
+		setBackground(CELL_BACKGROUND);
+
+		initListeners();
+	}
+
+	private void initListeners() {
+		addMouseListener(new MouseAdapter() {
+			@Override
+			public void mousePressed(MouseEvent e) {
+				requestFocusInWindow();
+				if (!interactive)
+					return;
+
+				int cell = cellAt(e.getX(), e.getY());
+				if (cell != NONE)
+					select(cell);
+			}
+		});
+
+		addFocusListener(new FocusAdapter() {
+			@Override
+			public void focusGained(FocusEvent fe) {
+				if (selectedCell == NONE)
+					selectedCell = 0;
+
+				repaintCell(selectedCell);
+			}
+
+			@Override
+			public void focusLost(FocusEvent fe) {
+				repaintCell(selectedCell);
+			}
+		});
+
+		addKeyListener(new KeyAdapter() {
+			@Override
+			public void keyPressed(KeyEvent e) {
+				if (!interactive || selectedCell == NONE)
+					return;
+
+				handleArrowKeys(e);
+				if (isChangeable(selectedCell))
+					handleDigit(e);
+			}
+
+			void handleDigit(KeyEvent e) {
+				int keyCode = e.getKeyCode();
+				int newDigit = getDigit(keyCode);
+				if (newDigit > geometry.getSide())
+					newDigit = -1;
+
+				if (keyCode == KeyEvent.VK_DELETE || keyCode == KeyEvent.VK_BACK_SPACE) {
+					newDigit = 0;
+					e.consume();
+				}
+
+				if (newDigit == -1)
+					return;
+
+				board.setDigit(selectedCell, newDigit);
+			}
+
+			void handleArrowKeys(KeyEvent e) {
+				int side = geometry.getSide();
+				int row = selectedCell / side;
+				int column = selectedCell % side;
+				switch (e.getKeyCode()) {
+					case KeyEvent.VK_UP:
+						--row;
+						break;
+					case KeyEvent.VK_DOWN:
+						++row;
+						break;
+					case KeyEvent.VK_LEFT:
+						--column;
+						break;
+					case KeyEvent.VK_RIGHT:
+						++column;
+						break;
+					default:
+						return;
+				}
+
+				if (row < 0 || row >= side || column < 0 || column >= side)
+					return;
+
+				select(side * row + column);
+			}
+		});
+	}
+
+	/**
+	 * Enables or disables selection and editing; the selection is hidden
+	 * while disabled.
+	 */
+	public void setInteractive(boolean interactive) {
+		this.interactive = interactive;
+		repaintCell(selectedCell);
+	}
+
+	public void setCellBackground(int cell, Color color) {
+		if (!color.equals(backgrounds[cell])) {
+			backgrounds[cell] = color;
+			repaintCell(cell);
+		}
+	}
+
+	public Color getCellBackground(int cell) {
+		return backgrounds[cell];
+	}
+
+	/**
+	 * Locks or unlocks a cell the player has filled in. Locked cells are drawn
+	 * like clues and cannot be edited.
+	 */
+	public void setLocked(int cell, boolean locked) {
+		if (this.locked[cell] != locked) {
+			this.locked[cell] = locked;
+			repaintCell(cell);
+		}
+	}
+
+	public boolean isChangeable(int cell) {
+		return !board.isGiven(cell) && !locked[cell];
+	}
+
+	@Override
+	public void cellChanged(int cell, int oldDigit, int newDigit) {
+		repaintCell(cell);
+
+		// Peers may have started or stopped conflicting with either digit
+		for (int peer : geometry.getPeers(cell)) {
+			int digit = board.getDigit(peer);
+			if (digit != 0 && (digit == oldDigit || digit == newDigit))
+				repaintCell(peer);
+		}
+	}
+
+	@Override
+	public void boardLoaded() {
+		resetCells();
+		repaint();
+	}
+
+	private void resetCells() {
+		if (board.getGeometry() != geometry) {
+			geometry = board.getGeometry();
+			backgrounds = new Color[geometry.getCells()];
+			locked = new boolean[geometry.getCells()];
+			selectedCell = NONE;
+		}
+
+		Arrays.fill(backgrounds, CELL_BACKGROUND);
+		Arrays.fill(locked, false);
+	}
+
+	private void select(int cell) {
+		int previous = selectedCell;
+		selectedCell = cell;
+		repaintCell(previous);
+		repaintCell(cell);
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		return isPreferredSizeSet() ? super.getPreferredSize() : PREFERRED_SIZE;
+	}
+
+	@Override
+	public Dimension getMinimumSize() {
+		return isMinimumSizeSet() ? super.getMinimumSize() : PREFERRED_SIZE;
+	}
+
+	// Geometry: the grid is the largest square fitting the component, centred
+	private int cellSize() {
+		return Math.max(1, (Math.min(getWidth(), getHeight()) - 2) / geometry.getSide());
+	}
+
+	private int originX() {
+		return (getWidth() - geometry.getSide() * cellSize()) / 2;
+	}
+
+	private int originY() {
+		return (getHeight() - geometry.getSide() * cellSize()) / 2;
+	}
+
+	private int cellAt(int x, int y) {
+		int side = geometry.getSide();
+		int size = cellSize();
+		int column = Math.floorDiv(x - originX(), size);
+		int row = Math.floorDiv(y - originY(), size);
+		if (row < 0 || row >= side || column < 0 || column >= side)
+			return NONE;
+
+		return side * row + column;
+	}
+
+	private void repaintCell(int cell) {
+		if (cell == NONE)
+			return;
+
+		// Include the borders, which are up to 2 pixels wide
+		int size = cellSize();
+		int side = geometry.getSide();
+		repaint(originX() + (cell % side) * size - 1, originY() + (cell / side) * size - 1, size + 3, size + 3);
+	}
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		Graphics2D g2 = (Graphics2D) g.create();
+		try {
+			g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+			Rectangle clip = g2.getClipBounds();
+			if (clip == null)
+				clip = new Rectangle(0, 0, getWidth(), getHeight());
+
+			g2.setColor(getBackground());
+			g2.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+			int size = cellSize();
+			int x0 = originX();
+			int y0 = originY();
+			updateFonts(size);
+
+			int side = geometry.getSide();
+			for (int cell = 0; cell < geometry.getCells(); ++cell) {
+				int x = x0 + (cell % side) * size;
+				int y = y0 + (cell / side) * size;
+				if (clip.intersects(x, y, size, size))
+					paintCell(g2, cell, x, y, size);
+			}
+
+			paintGrid(g2, x0, y0, size);
+		} finally {
+			g2.dispose();
+		}
+	}
+
+	private void paintCell(Graphics2D g, int cell, int x, int y, int size) {
+		boolean selected = interactive && cell == selectedCell && isFocusOwner();
+		g.setColor(selected ? CELL_BACKGROUND_SELECTED : backgrounds[cell]);
+		g.fillRect(x, y, size, size);
+
+		int digit = board.getDigit(cell);
+		if (digit == 0)
+			return;
+
+		Font font = isChangeable(cell) ? plainFont : boldFont;
+		FontMetrics metrics = g.getFontMetrics(font);
+		String text = getSymbol(digit);
+
+		g.setFont(font);
+		g.setColor(board.isConflicting(cell) ? CELL_FOREGROUND_CONFLICT : CELL_FOREGROUND);
+		g.drawString(text, x + (size - metrics.stringWidth(text)) / 2, y + (size - metrics.getHeight()) / 2 + metrics.getAscent());
+	}
+
+	private void paintGrid(Graphics2D g, int x0, int y0, int size) {
+		g.setColor(Color.BLACK);
+		int side = geometry.getSide();
+		int length = side * size;
+
+		for (int i = 0; i <= side; ++i) {
+			int offset = i * size;
+			int width = (i % geometry.getBoxSize() == 0) ? 2 : 1;
+
+			g.fillRect(x0 + offset - width / 2, y0, width, length);
+			g.fillRect(x0, y0 + offset - width / 2, length, width);
+		}
+	}
+
+	private void updateFonts(int size) {
+		if (size == fontCellSize)
+			return;
+
+		fontCellSize = size;
+		float points = Math.max(8, size * 0.34f);
+		plainFont = new Font("Dialog", Font.PLAIN, 1).deriveFont(points);
+		boldFont = plainFont.deriveFont(Font.BOLD);
+	}
+
+	/**
+	 * Returns the digit typed with the given key, or -1 for other keys.
+	 */
+	private static int getDigit(int keyCode) {
+		if (keyCode >= KeyEvent.VK_1 && keyCode <= KeyEvent.VK_9)
+			return keyCode - KeyEvent.VK_0;
+
+		if (keyCode >= KeyEvent.VK_NUMPAD1 && keyCode <= KeyEvent.VK_NUMPAD9)
+			return keyCode - KeyEvent.VK_NUMPAD0;
+
+		if (keyCode >= KeyEvent.VK_A && keyCode <= KeyEvent.VK_Z)
+			return 10 + keyCode - KeyEvent.VK_A;
+
+		return -1;
+	}
+
+	static String getSymbol(int digit) {
+		return String.valueOf((char) ((digit <= 9) ? '0' + digit : 'A' + digit - 10));
+	}
+}
@@ -0,0 +1,394 @@
+package me.totom3.sudoku;
+
+import java.util.Arrays;
+
+/**
+ * Maps 9x9 puzzles to a canonical form shared by every puzzle equivalent to
+ * them under the symmetries of sudoku: relabelling the digits, permuting the
+ * rows within a band and the bands, doing the same with columns and stacks,
+ * and transposing. The canonical form of some clues is the smallest of all
+ * their transformations, compared cell by cell in row-major order, with the
+ * digits relabelled in order of first appearance and holes ranking after
+ * every digit.
+ * <p>
+ * The search builds the canonical form one row at a time, keeping only the
+ * transformations whose rows so far match the smallest ones found. Out of
+ * the 2 x 1296 ways to transpose the grid and order its columns, the first
+ * row leaves a few dozen, and for puzzles with enough clues to be unique a
+ * single one remains after a few more rows. Nearly empty grids are slow to
+ * canonicalize.
+ *
+ * @author Totom3
+ */
+public final class SudokuCanonicalizer {
+
+	private static final int HOLE = 10;
+	// Above every symbol, so that the first row evaluated is the smallest
+	private static final int UNSET = HOLE + 1;
+
+	private static final int[][] PERMUTATIONS_3 = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+
+	// Where the clues of a stack fall once its columns are ordered. Usage:
+	// STACK_PATTERNS[permutation][3-bit clue mask]
+	private static final int[][] STACK_PATTERNS = new int[6][8];
+
+	// Indexed by ((stacks * 6 + first) * 6 + second) * 6 + third, where each
+	// is an index in PERMUTATIONS_3
+	private static final int[][] COLUMN_PERMUTATIONS = new int[6 * 6 * 6 * 6][];
+
+	static {
+		for (int permutation = 0; permutation < 6; ++permutation) {
+			for (int mask = 0; mask < 8; ++mask) {
+				for (int i = 0; i < 3; ++i)
+					STACK_PATTERNS[permutation][mask] |= (mask >>> PERMUTATIONS_3[permutation][i] & 1) << (2 - i);
+			}
+		}
+
+		// Stack order, then column order within each output stack
+		int index = 0;
+		for (int[] stacks : PERMUTATIONS_3) {
+			for (int[] first : PERMUTATIONS_3) {
+				for (int[] second : PERMUTATIONS_3) {
+					for (int[] third : PERMUTATIONS_3) {
+						int[][] withinStacks = {first, second, third};
+						int[] columns = new int[9];
+						for (int stack = 0; stack < 3; ++stack) {
+							for (int i = 0; i < 3; ++i)
+								columns[3 * stack + i] = 3 * stacks[stack] + withinStacks[stack][i];
+						}
+
+						COLUMN_PERMUTATIONS[index++] = columns;
+					}
+				}
+			}
+		}
+	}
+
+	private static final ThreadLocal<SudokuCanonicalizer> THREAD_CANONICALIZERS = ThreadLocal.withInitial(SudokuCanonicalizer::new);
+
+	/**
+	 * Returns a canonicalizer confined to the calling thread, which must not
+	 * let it escape to other threads.
+	 */
+	public static SudokuCanonicalizer forCurrentThread() {
+		return THREAD_CANONICALIZERS.get();
+	}
+
+	/**
+	 * Returns a 64-bit hash of a canonical form, for indexes that can live
+	 * with a collision once in about 2^32 distinct puzzles.
+	 */
+	public static long fingerprint(int[] canonicalClues) {
+		long hash = 0x9E3779B97F4A7C15L;
+		long word = 0;
+		for (int i = 0; i < canonicalClues.length; ++i) {
+			word = word << 4 | canonicalClues[i];
+			if (i % 16 == 15 || i == canonicalClues.length - 1) {
+				hash = mix(hash ^ word);
+				word = 0;
+			}
+		}
+
+		return hash;
+	}
+
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	// The clues, and their transposition
+	private final int[][] grids = new int[2][81];
+	private final boolean[] startingColumns = new boolean[COLUMN_PERMUTATIONS.length];
+	// The rows that can come first, per transposition
+	private final int[] firstRows = new int[2];
+
+	// The transformations still in the running, and those surviving the row
+	// being built
+	private States current = new States();
+	private States next = new States();
+
+	// The smallest rows found so far; holes are HOLE
+	private final int[] canonical = new int[81];
+	private final int[] candidateRow = new int[9];
+
+	// The labels after the last evaluated row
+	private long evaluatedLabels;
+	private int evaluatedNextLabel;
+
+	/**
+	 * Returns the canonical form of the given clues, {@code 0} meaning a
+	 * hole.
+	 */
+	public int[] canonicalize(int[] clues) {
+		search(clues);
+
+		int[] result = new int[81];
+		for (int i = 0; i < 81; ++i)
+			result[i] = (canonical[i] == HOLE) ? 0 : canonical[i];
+
+		return result;
+	}
+
+	/**
+	 * Returns the puzzle whose clues are the canonical form of the given
+	 * puzzle's, together with its solution transformed the same way.
+	 */
+	public SudokuPuzzle canonicalize(SudokuPuzzle puzzle) {
+		int[] solution = puzzle.getSolution();
+		search(puzzle.getClues());
+
+		// Every surviving transformation gives the same clues; take the first
+		int transposition = current.transposition[0];
+		int[] columns = COLUMN_PERMUTATIONS[current.column[0]];
+		long rows = current.rows[0];
+		long labels = current.labels[0];
+
+		// Digits missing from the clues get the remaining labels in order
+		int nextLabel = current.nextLabel[0];
+		for (int digit = 1; digit <= 9; ++digit) {
+			if (labelOf(labels, digit) == 0) {
+				labels |= (long) nextLabel << (4 * digit);
+				++nextLabel;
+			}
+		}
+
+		int[] canonicalSolution = new int[81];
+		int[] canonicalMask = new int[81];
+		for (int row = 0; row < 9; ++row) {
+			int inputRow = (int) (rows >>> (4 * row)) & 0xF;
+			for (int j = 0; j < 9; ++j) {
+				int cell = (transposition == 0) ? 9 * inputRow + columns[j] : 9 * columns[j] + inputRow;
+				canonicalSolution[9 * row + j] = labelOf(labels, solution[cell]);
+				canonicalMask[9 * row + j] = (canonical[9 * row + j] == HOLE) ? 0 : 1;
+			}
+		}
+
+		return new SudokuPuzzle(canonicalSolution, canonicalMask);
+	}
+
+	private static int labelOf(long labels, int digit) {
+		return (int) (labels >>> (4 * digit)) & 0xF;
+	}
+
+	private void search(int[] clues) {
+		if (clues.length != 81)
+			throw new IllegalArgumentException("Only 9x9 puzzles can be canonicalized");
+
+		for (int i = 0; i < 81; ++i) {
+			grids[0][i] = clues[i];
+			grids[1][i] = clues[9 * (i % 9) + i / 9];
+		}
+
+		// The digits of the first row are labelled in order, so it only
+		// depends on where its clues fall; start from the column orders that
+		// put the clues of some row as early as they can go
+		int best = 0;
+		for (int transposition = 0; transposition < 2; ++transposition) {
+			for (int row = 0; row < 9; ++row)
+				best = Math.max(best, bestPattern(clueMask(grids[transposition], row)));
+		}
+
+		current.clear();
+		for (int transposition = 0; transposition < 2; ++transposition) {
+			Arrays.fill(startingColumns, false);
+			firstRows[transposition] = 0;
+			for (int row = 0; row < 9; ++row) {
+				int mask = clueMask(grids[transposition], row);
+				if (bestPattern(mask) == best) {
+					firstRows[transposition] |= 1 << row;
+					markColumnPermutations(mask, best);
+				}
+			}
+
+			for (int column = 0; column < COLUMN_PERMUTATIONS.length; ++column) {
+				if (startingColumns[column])
+					current.add(transposition, column, 0, 0, 0, 1);
+			}
+		}
+
+		for (int row = 0; row < 9; ++row) {
+			next.clear();
+			Arrays.fill(canonical, 9 * row, 9 * row + 9, UNSET);
+
+			for (int state = 0; state < current.size; ++state) {
+				int used = current.used[state];
+				int firstRow, lastRow;
+				if (row % 3 == 0) {
+					firstRow = 0;
+					lastRow = 8;
+				} else {
+					int band = (int) (current.rows[state] >>> (4 * (row - 1)) & 0xF) / 3;
+					firstRow = 3 * band;
+					lastRow = 3 * band + 2;
+				}
+
+				for (int inputRow = firstRow; inputRow <= lastRow; ++inputRow) {
+					if ((used & (1 << inputRow)) != 0)
+						continue;
+
+					if (row == 0 && (firstRows[current.transposition[state]] & (1 << inputRow)) == 0)
+						continue;
+
+					// A new band must be entirely unused
+					if (row % 3 == 0 && (used & (7 << (inputRow / 3 * 3))) != 0)
+						continue;
+
+					int result = evaluate(state, inputRow, row);
+					if (result > 0)
+						continue;
+
+					if (result < 0) {
+						next.clear();
+						System.arraycopy(candidateRow, 0, canonical, 9 * row, 9);
+					}
+
+					next.add(current.transposition[state], current.column[state],
+							current.rows[state] | (long) inputRow << (4 * row), used | (1 << inputRow),
+							evaluatedLabels, evaluatedNextLabel);
+				}
+			}
+
+			States swap = current;
+			current = next;
+			next = swap;
+		}
+	}
+
+	private static int clueMask(int[] grid, int row) {
+		int mask = 0;
+		for (int column = 0; column < 9; ++column) {
+			if (grid[9 * row + column] != 0)
+				mask |= 1 << column;
+		}
+
+		return mask;
+	}
+
+	/**
+	 * Marks in {@code startingColumns} the column permutations putting the
+	 * clues of a row where {@code pattern} says, 9 bits with the first column
+	 * in the highest. Each output stack can be checked on its own.
+	 */
+	private void markColumnPermutations(int mask, int pattern) {
+		int[] stackMasks = new int[3];
+		for (int stacks = 0; stacks < 6; ++stacks) {
+			for (int stack = 0; stack < 3; ++stack)
+				stackMasks[stack] = mask >>> (3 * PERMUTATIONS_3[stacks][stack]) & 7;
+
+			for (int first = 0; first < 6; ++first) {
+				if (STACK_PATTERNS[first][stackMasks[0]] != (pattern >>> 6 & 7))
+					continue;
+
+				for (int second = 0; second < 6; ++second) {
+					if (STACK_PATTERNS[second][stackMasks[1]] != (pattern >>> 3 & 7))
+						continue;
+
+					for (int third = 0; third < 6; ++third) {
+						if (STACK_PATTERNS[third][stackMasks[2]] == (pattern & 7))
+							startingColumns[((stacks * 6 + first) * 6 + second) * 6 + third] = true;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the largest pattern of a row over all column orders: stacks by
+	 * decreasing number of clues, each with its clues first.
+	 */
+	private static int bestPattern(int mask) {
+		int[] counts = new int[3];
+		for (int stack = 0; stack < 3; ++stack)
+			counts[stack] = Integer.bitCount(mask >>> (3 * stack) & 7);
+
+		Arrays.sort(counts);
+
+		int pattern = 0;
+		for (int stack = 2; stack >= 0; --stack)
+			pattern = pattern << 3 | ((7 << (3 - counts[stack])) & 7);
+
+		return pattern;
+	}
+
+	/**
+	 * Builds the row given by a transformation and an input row into
+	 * {@code candidateRow}, and compares it with the smallest one found so
+	 * far. Returns early when it is larger, which leaves the row incomplete.
+	 */
+	private int evaluate(int state, int inputRow, int outputRow) {
+		int[] grid = grids[current.transposition[state]];
+		int[] columns = COLUMN_PERMUTATIONS[current.column[state]];
+		long labels = current.labels[state];
+		int nextLabel = current.nextLabel[state];
+
+		int result = 0;
+		for (int j = 0; j < 9; ++j) {
+			int digit = grid[9 * inputRow + columns[j]];
+			int symbol = HOLE;
+			if (digit != 0) {
+				symbol = labelOf(labels, digit);
+				if (symbol == 0) {
+					symbol = nextLabel++;
+					labels |= (long) symbol << (4 * digit);
+				}
+			}
+
+			if (result == 0) {
+				int best = canonical[9 * outputRow + j];
+				if (symbol > best)
+					return 1;
+
+				if (symbol < best)
+					result = -1;
+			}
+
+			candidateRow[j] = symbol;
+		}
+
+		evaluatedLabels = labels;
+		evaluatedNextLabel = nextLabel;
+		return result;
+	}
+
+	/**
+	 * Partial transformations, as parallel arrays: the transposition, the
+	 * column permutation, the input rows chosen so far (4 bits each) and the
+	 * set of them, and the digit labels given so far (4 bits per digit).
+	 */
+	private static final class States {
+
+		int size;
+		int[] transposition = new int[4096];
+		int[] column = new int[4096];
+		long[] rows = new long[4096];
+		int[] used = new int[4096];
+		long[] labels = new long[4096];
+		int[] nextLabel = new int[4096];
+
+		void clear() {
+			size = 0;
+		}
+
+		void add(int transposition, int column, long rows, int used, long labels, int nextLabel) {
+			if (size == this.transposition.length) {
+				int capacity = 2 * size;
+				this.transposition = Arrays.copyOf(this.transposition, capacity);
+				this.column = Arrays.copyOf(this.column, capacity);
+				this.rows = Arrays.copyOf(this.rows, capacity);
+				this.used = Arrays.copyOf(this.used, capacity);
+				this.labels = Arrays.copyOf(this.labels, capacity);
+				this.nextLabel = Arrays.copyOf(this.nextLabel, capacity);
+			}
+
+			this.transposition[size] = transposition;
+			this.column[size] = column;
+			this.rows[size] = rows;
+			this.used[size] = used;
+			this.labels[size] = labels;
+			this.nextLabel[size] = nextLabel;
+			++size;
+		}
+	}
+}
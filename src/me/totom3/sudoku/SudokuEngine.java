@@ -0,0 +1,26 @@
+package me.totom3.sudoku;
+
+import java.util.Set;
+
+/**
+ * A solving algorithm that can be reused across several grids.
+ *
+ * @author Totom3
+ */
+public interface SudokuEngine {
+
+	/**
+	 * Finds up to {@code limit} solutions of the given grid, where empty cells
+	 * are {@code 0}. A limit smaller than 1 finds every solution. The grid is
+	 * left untouched.
+	 */
+	Set<int[]> getSolutions(int[] sudoku, int limit);
+
+	/**
+	 * Counts the solutions of the given grid, stopping once {@code limit} of
+	 * them have been found. A limit smaller than 1 counts every solution.
+	 * Solutions are not stored, so this is the cheaper way to check that a
+	 * grid has a unique solution.
+	 */
+	int countSolutions(int[] sudoku, int limit);
+}
@@ -0,0 +1,46 @@
+package me.totom3.sudoku;
+
+/**
+ *
+ * @author Totom3
+ */
+public enum SudokuEngineType {
+
+	BACKTRACKING("Backtracking") {
+		@Override
+		public SudokuEngine create() {
+			return new BacktrackingEngine();
+		}
+	},
+	DANCING_LINKS("Dancing Links") {
+		@Override
+		public SudokuEngine create() {
+			return new DancingLinksSolver();
+		}
+	};
+
+	private final String displayName;
+	private final ThreadLocal<SudokuEngine> threadEngines = ThreadLocal.withInitial(this::create);
+
+	private SudokuEngineType(String displayName) {
+		this.displayName = displayName;
+	}
+
+	/**
+	 * Creates a new engine of this type. Engines are not thread-safe.
+	 */
+	public abstract SudokuEngine create();
+
+	/**
+	 * Returns an engine of this type confined to the calling thread, created
+	 * on first use and reused afterwards.
+	 */
+	public SudokuEngine forCurrentThread() {
+		return threadEngines.get();
+	}
+
+	@Override
+	public String toString() {
+		return displayName;
+	}
+}
@@ -1,25 +1,28 @@
 package me.totom3.sudoku;
 
-import java.awt.Color;
-import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
-import java.awt.event.FocusEvent;
-import java.awt.event.FocusListener;
-import java.awt.event.KeyAdapter;
-import java.awt.event.KeyEvent;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.DecimalFormat;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
-import javax.swing.JTextField;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
-import javax.swing.border.MatteBorder;
+import javax.swing.Timer;
 
 /**
  *
@@ -28,23 +31,27 @@ import javax.swing.border.MatteBorder;
 public class SudokuGUI extends JFrame {
 
 	private static final int SUDOKU_HOLES = 50;
+	private static final int POOL_LOW_WATERMARK = 4;
+	private static final int POOL_HIGH_WATERMARK = 16;
+	private static final int CLOCK_TICK_MS = 200;
+	private static final int CORRECT_HIGHLIGHT_MS = 5_000;
+	private static final Path POOL_FILE = Paths.get(System.getProperty("user.home"), ".simple-sudoku", "pool.bin");
 
 	private static final String INSTRUCTIONS = "<html><p><b>Instructions:</b> every row, column, and square region must contain all<br /> digits from 1-9 exactly once. Using the given clues, try to fill the entire <br />board as fast as you can! Use arrow keys or the mouse to navigate.</p></html>";
 	private static final String FOOTER = "Sudoku made by Totom3 (2017)";
 	private static final String GENERATE_BOARD_TEXT = "Generate New";
+	private static final String GENERATING_BOARD_TEXT = "Generating...";
 	private static final String CHECK_ANSWER_TEXT = "Check Answer";
+	private static final String ENGINE_SELECTOR_TOOLTIP = "Solver used to check that new boards have a unique solution";
+	private static final String SIZE_SELECTOR_TOOLTIP = "Size of new boards; larger boards are always checked by backtracking";
 
 	private static final Font BOLD_FONT = new Font("Dialog", Font.BOLD, 15);
 	private static final Font PLAIN_FONT = new Font("Dialog", Font.PLAIN, 15);
 	private static final Font ITALIC_FONT = new Font("Dialog", Font.ITALIC, 15);
 
-	private static final Font BOLD_FONT_L = new Font("Dialog", Font.BOLD, 17);
-	private static final Font PLAIN_FONT_L = new Font("Dialog", Font.PLAIN, 17);
-
 	private JPanel contentPane;
 	private JPanel headerPanel;
 	private JPanel bodyPanel;
-	private JPanel boardPanel;
 	private JPanel footerPanel;
 
 	private JLabel instructions;
@@ -53,18 +60,32 @@ public class SudokuGUI extends JFrame {
 	private JLabel footerNote;
 	private JButton generateBoardButton;
 	private JButton showSolutionButton;
+	private JComboBox<SudokuEngineType> engineSelector;
+	private JComboBox<BoardSize> sizeSelector;
+
+	private final PuzzlePool puzzlePool = new PuzzlePool(SUDOKU_HOLES, POOL_LOW_WATERMARK, POOL_HIGH_WATERMARK, 1);
+
+	private final SudokuBoard board = new SudokuBoard();
+	private SudokuBoardView boardView;
 
-	// Ordered by rows. Usage: cells[row][column]
-	private SudokuBoardCell[][] cells;
+	// Of the current board
+	private int[] solution;
+
+	// Clear the correct answer highlights; created on first use
+	private Timer[] highlightResets = new Timer[0];
 
 	private boolean finished;
+	private boolean firstBoardReported;
 
 	private int errors;
-	private volatile int time; // in seconds
+	private int time; // in seconds
+
+	// Ticks on the event thread; the time shown is measured from gameStart
+	private final Timer clock = new Timer(CLOCK_TICK_MS, e -> updateTime());
+	private long gameStart;
 
 	/**
-	 * Incremented every time a board is generated; used so timer thread know
-	 * when to stop.
+	 * Incremented every time a board is generated.
 	 */
 	private long gameUid;
 
@@ -74,14 +95,25 @@ public class SudokuGUI extends JFrame {
 		setLocationRelativeTo(null);
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
+		// Keep the unused puzzles for the next run
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				puzzlePool.save(POOL_FILE);
+			} catch (IOException ex) {
+				System.err.println("Could not save the puzzle pool: " + ex);
+			}
+		}, "puzzle-pool-saver"));
+
 		setVisible(true);
+		SwingUtilities.invokeLater(this::reportFirstBoard);
 	}
 
 	public SudokuGUI init() {
+		loadPuzzlePool();
 
 		// Initiate all components and panels
 		initComponents();
-		initBoardPanel(boardPanel);
+		initBoard();
 
 		// Customize the components
 		footerNote.setHorizontalAlignment(SwingConstants.RIGHT);
@@ -91,11 +123,20 @@ public class SudokuGUI extends JFrame {
 		return this;
 	}
 
+	private void loadPuzzlePool() {
+		try {
+			puzzlePool.load(POOL_FILE);
+		} catch (IOException ex) {
+			System.err.println("Could not load the puzzle pool: " + ex);
+		}
+
+		puzzlePool.start();
+	}
+
 	private void initComponents() {
 		contentPane = new JPanel(new GridBagLayout());
 		headerPanel = new JPanel();
 		bodyPanel = new JPanel(new GridBagLayout());
-		boardPanel = new JPanel(new GridBagLayout());
 		footerPanel = new JPanel();
 
 		headerPanel.setLayout(new BoxLayout(headerPanel, BoxLayout.Y_AXIS));
@@ -108,6 +149,8 @@ public class SudokuGUI extends JFrame {
 
 		generateBoardButton = new JButton(GENERATE_BOARD_TEXT);
 		showSolutionButton = new JButton(CHECK_ANSWER_TEXT);
+		engineSelector = new JComboBox<>(SudokuEngineType.values());
+		sizeSelector = new JComboBox<>(BoardSize.values());
 
 		instructions.setFont(PLAIN_FONT);
 		timeLabel.setFont(PLAIN_FONT);
@@ -115,34 +158,74 @@ public class SudokuGUI extends JFrame {
 		footerNote.setFont(ITALIC_FONT);
 		generateBoardButton.setFont(BOLD_FONT);
 		showSolutionButton.setFont(BOLD_FONT);
+		engineSelector.setFont(PLAIN_FONT);
+		engineSelector.setToolTipText(ENGINE_SELECTOR_TOOLTIP);
+		sizeSelector.setFont(PLAIN_FONT);
+		sizeSelector.setToolTipText(SIZE_SELECTOR_TOOLTIP);
 		footerNote.setAlignmentX(JLabel.RIGHT_ALIGNMENT);
 
 		generateBoardButton.addActionListener(e -> generateNewBoard());
-		showSolutionButton.addActionListener(e -> {
-			if (finished)
-				return;
+		engineSelector.addActionListener(e -> puzzlePool.setEngineType((SudokuEngineType) engineSelector.getSelectedItem()));
+		showSolutionButton.addActionListener(e -> checkAnswers());
 
-			boolean isValid = true;
-			for (int row = 0; row < 9; ++row) {
-				for (int column = 0; column < 9; ++column) {
-					isValid = isValid & cells[row][column].checkAnswer();
-				}
+		// Until the first board is shown
+		showSolutionButton.setEnabled(false);
+
+	}
+
+	private void checkAnswers() {
+		if (finished || solution == null)
+			return;
+
+		boolean isValid = true;
+		for (int cell = 0; cell < solution.length; ++cell)
+			isValid = isValid & checkAnswer(cell);
+
+		if (isValid) {
+			finished = true;
+			clock.stop();
+			boardView.setInteractive(false);
+
+			for (int cell = 0; cell < solution.length; ++cell) {
+				cancelHighlightReset(cell);
+				boardView.setCellBackground(cell, SudokuBoardView.CELL_BACKGROUND_CORRECT);
 			}
+		}
+	}
+
+	private boolean checkAnswer(int cell) {
+		if (!boardView.isChangeable(cell))
+			return true;
 
-			if (isValid) {
-				finished = true;
+		int digit = board.getDigit(cell);
+		if (digit == 0)
+			return false;
 
-				// Stop timer
-				++gameUid;
+		if (digit == solution[cell]) {
+			boardView.setLocked(cell, true);
+			boardView.setCellBackground(cell, SudokuBoardView.CELL_BACKGROUND_CORRECT);
 
-				for (int row = 0; row < 9; ++row) {
-					for (int column = 0; column < 9; ++column) {
-						cells[row][column].setBackground(CELL_BACKGROUND_CORRECT);
-					}
-				}
+			if (highlightResets[cell] == null) {
+				highlightResets[cell] = new Timer(CORRECT_HIGHLIGHT_MS, e -> {
+					if (SudokuBoardView.CELL_BACKGROUND_CORRECT.equals(boardView.getCellBackground(cell)))
+						boardView.setCellBackground(cell, SudokuBoardView.CELL_BACKGROUND);
+				});
+				highlightResets[cell].setRepeats(false);
 			}
-		});
 
+			highlightResets[cell].restart();
+			return true;
+		} else {
+			boardView.setCellBackground(cell, SudokuBoardView.CELL_BACKGROUND_INCORRECT);
+
+			setErrors(errors + 1);
+			return false;
+		}
+	}
+
+	private void cancelHighlightReset(int cell) {
+		if (highlightResets[cell] != null)
+			highlightResets[cell].stop();
 	}
 
 	private void buildPanels() {
@@ -151,7 +234,7 @@ public class SudokuGUI extends JFrame {
 
 		GridBagConstraints cons = makeConstraints(0, 0);
 		cons.gridwidth = 2;
-		bodyPanel.add(boardPanel, cons);
+		bodyPanel.add(boardView, cons);
 
 		Insets insetsRight = new Insets(10, 0, 0, 5);
 		Insets insetsLeft = new Insets(10, 5, 0, 0);
@@ -160,6 +243,14 @@ public class SudokuGUI extends JFrame {
 		bodyPanel.add(timeLabel, makeConstraints(0, 2, 1, 0, insetsRight));
 		bodyPanel.add(errorsLabel, makeConstraints(1, 2, 1, 0, insetsLeft));
 
+		GridBagConstraints engineCons = makeConstraints(0, 3, 1, 0, new Insets(10, 0, 0, 0));
+		engineCons.gridwidth = 2;
+		bodyPanel.add(engineSelector, engineCons);
+
+		GridBagConstraints sizeCons = makeConstraints(0, 4, 1, 0, new Insets(10, 0, 0, 0));
+		sizeCons.gridwidth = 2;
+		bodyPanel.add(sizeSelector, sizeCons);
+
 		Insets insetsBottom = new Insets(0, 0, 20, 0);
 		contentPane.add(headerPanel, makeConstraints(0, 0, insetsBottom));
 		contentPane.add(bodyPanel, makeConstraints(0, 1, 0, 0, insetsBottom));
@@ -167,66 +258,107 @@ public class SudokuGUI extends JFrame {
 		add(contentPane);
 	}
 
-	private void initBoardPanel(JPanel boardPanel) {
-		cells = new SudokuBoardCell[9][9];
-
-		for (int row = 0; row < 9; ++row) {
-			for (int column = 0; column < 9; ++column) {
-				SudokuBoardCell cell = new SudokuBoardCell(row, column);
-				GridBagConstraints cons = makeConstraints(column, row);
-				boardPanel.add(cell, cons);
+	private void initBoard() {
+		boardView = new SudokuBoardView(board);
+		boardView.setInteractive(false);
+		board.addListener(new SudokuBoard.Listener() {
+			@Override
+			public void cellChanged(int cell, int oldDigit, int newDigit) {
+				// A wrong answer stays marked until the player changes it
+				if (SudokuBoardView.CELL_BACKGROUND_INCORRECT.equals(boardView.getCellBackground(cell)))
+					boardView.setCellBackground(cell, SudokuBoardView.CELL_BACKGROUND);
+
+				if (board.isComplete())
+					checkAnswers();
+			}
 
-				cells[row][column] = cell;
+			@Override
+			public void boardLoaded() {
 			}
-		}
+		});
 
 		generateNewBoard();
 	}
 
 	private void generateNewBoard() {
-		finished = false;
+		BoardSize size = (BoardSize) sizeSelector.getSelectedItem();
+		CompletableFuture<SudokuPuzzle> future;
+
+		if (size == BoardSize.STANDARD) {
+			SudokuPuzzle puzzle = puzzlePool.poll();
+			if (puzzle != null) {
+				showBoard(puzzle);
+				return;
+			}
 
-		int[] sudoku = SudokuGenerator.generateSudoku();
-		int[] mask = SudokuMaskGenerator.generateMask(sudoku, SUDOKU_HOLES);
+			// The pool ran dry
+			future = puzzlePool.take();
+		} else {
+			future = CompletableFuture.supplyAsync(() -> {
+				int[] sudoku = SudokuGenerator.generateSudoku(size.geometry, new SplittableRandom());
+				return new SudokuPuzzle(sudoku, SudokuMaskGenerator.generateMask(sudoku, size.holes));
+			});
+		}
 
-		for (int row = 0; row < 9; ++row) {
-			for (int column = 0; column < 9; ++column) {
-				int index = 9 * row + column;
+		// Build the board off the event thread
+		generateBoardButton.setEnabled(false);
+		generateBoardButton.setText(GENERATING_BOARD_TEXT);
+		future.whenComplete((newPuzzle, ex) -> SwingUtilities.invokeLater(() -> {
+			generateBoardButton.setText(GENERATE_BOARD_TEXT);
+			generateBoardButton.setEnabled(true);
 
-				boolean masked = (mask[index] == 1);
-				SudokuBoardCell cell = cells[row][column];
-				cell.setChangeable(!masked);
-				cell.setDisplayDigit(masked ? sudoku[index] : 0);
-				cell.solutionDigit = sudoku[index];
-				cell.setBackground(CELL_BACKGROUND);
+			if (ex == null) {
+				showBoard(newPuzzle);
+			} else {
+				Throwable cause = (ex instanceof CompletionException) ? ex.getCause() : ex;
+				cause.printStackTrace();
+				JOptionPane.showMessageDialog(this, "Could not generate a board: " + cause, getTitle(), JOptionPane.ERROR_MESSAGE);
 			}
-		}
+		}));
+	}
+
+	private void showBoard(SudokuPuzzle puzzle) {
+		finished = false;
+
+		solution = puzzle.getSolution();
+		for (int cell = 0; cell < highlightResets.length; ++cell)
+			cancelHighlightReset(cell);
+
+		if (highlightResets.length != solution.length)
+			highlightResets = new Timer[solution.length];
+
+		board.load(puzzle.getClues());
+		boardView.setInteractive(true);
+		showSolutionButton.setEnabled(true);
 
 		setErrors(0);
 		setTime(0);
 		gameUid++;
 		startTimer();
+		reportFirstBoard();
+	}
+
+	/**
+	 * Prints how long after the JVM started the first board became playable,
+	 * that is both shown and filled.
+	 */
+	private void reportFirstBoard() {
+		if (firstBoardReported || !isVisible() || gameUid == 0)
+			return;
+
+		firstBoardReported = true;
+		System.out.println("First board ready " + ManagementFactory.getRuntimeMXBean().getUptime() + " ms after startup");
 	}
 
 	private void startTimer() {
-		long uid = gameUid;
-		new Thread(() -> {
-			while (true) {
-				try {
-					Thread.sleep(1000);
-				} catch (InterruptedException ex) {
-					throw new AssertionError(ex);
-				}
-
-				if (uid != gameUid)
-					break;
-
-				SwingUtilities.invokeLater(() -> {
-					setTime(++time);
-				});
-			}
+		gameStart = System.nanoTime();
+		clock.restart();
+	}
 
-		}).start();
+	private void updateTime() {
+		int elapsed = (int) TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - gameStart);
+		if (elapsed != time)
+			setTime(elapsed);
 	}
 
 	private void setTime(int time) {
@@ -239,37 +371,26 @@ public class SudokuGUI extends JFrame {
 		errorsLabel.setText(getErrorsLabelText(errors));
 	}
 
-	private static int getDigit(int keyCode) {
-		switch (keyCode) {
-			case KeyEvent.VK_1:
-			case KeyEvent.VK_NUMPAD1:
-				return 1;
-			case KeyEvent.VK_2:
-			case KeyEvent.VK_NUMPAD2:
-				return 2;
-			case KeyEvent.VK_3:
-			case KeyEvent.VK_NUMPAD3:
-				return 3;
-			case KeyEvent.VK_4:
-			case KeyEvent.VK_NUMPAD4:
-				return 4;
-			case KeyEvent.VK_5:
-			case KeyEvent.VK_NUMPAD5:
-				return 5;
-			case KeyEvent.VK_6:
-			case KeyEvent.VK_NUMPAD6:
-				return 6;
-			case KeyEvent.VK_7:
-			case KeyEvent.VK_NUMPAD7:
-				return 7;
-			case KeyEvent.VK_8:
-			case KeyEvent.VK_NUMPAD8:
-				return 8;
-			case KeyEvent.VK_9:
-			case KeyEvent.VK_NUMPAD9:
-				return 9;
-			default:
-				return -1;
+	/**
+	 * The board sizes offered, with the number of holes dug in their puzzles.
+	 */
+	private enum BoardSize {
+
+		STANDARD(3, SUDOKU_HOLES),
+		LARGE(4, 130),
+		HUGE(5, 280);
+
+		final SudokuGeometry geometry;
+		final int holes;
+
+		private BoardSize(int boxSize, int holes) {
+			this.geometry = SudokuGeometry.of(boxSize);
+			this.holes = holes;
+		}
+
+		@Override
+		public String toString() {
+			return geometry.toString();
 		}
 	}
 
@@ -305,167 +426,4 @@ public class SudokuGUI extends JFrame {
 		cons.fill = GridBagConstraints.HORIZONTAL;
 		return cons;
 	}
-
-	static final Color CELL_BACKGROUND = Color.WHITE;
-	static final Color CELL_BACKGROUND_SELECTED = new Color(180, 219, 255);
-	static final Color CELL_BACKGROUND_CORRECT = new Color(117, 255, 117);
-	static final Color CELL_BACKGROUND_INCORRECT = new Color(255, 117, 117);
-
-	private final class SudokuBoardCell extends JTextField {
-
-		String previousValue = "";
-		final int row, column;
-
-		int digit, solutionDigit;
-		boolean changeable;
-
-		SudokuBoardCell(int row, int column) {
-			super(0);
-			this.row = row;
-			this.column = column;
-
-			computeBorder();
-
-			setEditable(false);
-			setBackground(CELL_BACKGROUND);
-			setHorizontalAlignment(JTextField.CENTER);
-			setFont(PLAIN_FONT_L);
-
-			initListeners();
-		}
-
-		void initListeners() {
-			addFocusListener(new FocusListener() {
-				@Override
-				public void focusGained(FocusEvent fe) {
-					if (!finished)
-						setBackground(CELL_BACKGROUND_SELECTED);
-				}
-
-				@Override
-				public void focusLost(FocusEvent fe) {
-					if (!finished)
-						setBackground(CELL_BACKGROUND);
-				}
-			});
-
-			addKeyListener(new KeyAdapter() {
-				@Override
-				public void keyPressed(KeyEvent e) {
-					if (!finished)
-						handleArrowKeys(e);
-
-					if (changeable)
-						handleDigit(e);
-				}
-
-				void handleDigit(KeyEvent e) {
-					int keyCode = e.getKeyCode();
-					int newDigit = getDigit(keyCode);
-
-					if (keyCode == KeyEvent.VK_DELETE || keyCode == KeyEvent.VK_BACK_SPACE) {
-						newDigit = 0;
-						e.consume();
-					}
-
-					if (newDigit == -1)
-						return;
-
-					setDisplayDigit(newDigit);
-				}
-
-				void handleArrowKeys(KeyEvent e) {
-					int newRow, newColumn;
-					switch (e.getKeyCode()) {
-						case KeyEvent.VK_UP:
-							newRow = row - 1;
-							newColumn = column;
-							break;
-						case KeyEvent.VK_DOWN:
-							newRow = row + 1;
-							newColumn = column;
-							break;
-						case KeyEvent.VK_LEFT:
-							newRow = row;
-							newColumn = column - 1;
-							break;
-						case KeyEvent.VK_RIGHT:
-							newRow = row;
-							newColumn = column + 1;
-							break;
-						default:
-							return;
-					}
-
-					if (newRow < 0 || newRow > 8 || newColumn < 0 || newColumn > 8)
-						return;
-
-					SudokuBoardCell newCell = cells[newRow][newColumn];
-					newCell.requestFocusInWindow();
-				}
-			});
-		}
-
-		void setDisplayDigit(int digit) {
-			this.digit = digit;
-			setText((digit == 0) ? "" : String.valueOf(digit));
-		}
-
-		void computeBorder() {
-			int top, left, bottom, right;
-
-			top = (row == 0 || row == 3 || row == 6) ? 2 : 1;
-			left = (column == 0 || column == 3 || column == 6) ? 2 : 1;
-			bottom = (row == 8) ? 2 : 0;
-			right = (column == 8) ? 2 : 0;
-
-			setBorder(new MatteBorder(top, left, bottom, right, Color.BLACK));
-		}
-
-		void setChangeable(boolean changeable) {
-			this.changeable = changeable;
-			setFont(changeable ? PLAIN_FONT_L : BOLD_FONT_L);
-		}
-
-		boolean checkAnswer() {
-			if (!changeable)
-				return true;
-			
-			if (digit == 0)
-				return false;
-
-			if (digit == solutionDigit) {
-				setChangeable(false);
-				setBackground(CELL_BACKGROUND_CORRECT);
-				revalidate();
-
-				final long currentGameUid = gameUid;
-				new Thread(() -> {
-					try {
-						Thread.sleep(5_000);
-					} catch (InterruptedException ex) {
-						throw new AssertionError(ex);
-					}
-
-					SwingUtilities.invokeLater(() -> {
-						if (currentGameUid == gameUid && CELL_BACKGROUND_CORRECT.equals(getBackground()))
-							setBackground(CELL_BACKGROUND);
-					});
-				}).start();
-
-				return true;
-			} else {
-				setBackground(CELL_BACKGROUND_INCORRECT);
-
-				setErrors(errors + 1);
-				return false;
-			}
-		}
-
-		@Override
-		public Dimension getPreferredSize() {
-			return new Dimension(50, 50);
-		}
-	}
-
 }
@@ -1,10 +1,9 @@
 package me.totom3.sudoku;
 
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.NoSuchElementException;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 /**
  *
@@ -12,93 +11,310 @@ import java.util.Random;
  */
 public class SudokuGenerator {
 
-	private static final List<Integer> DIGITS = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9);
+	private static final int ALL_DIGITS = 0x1FF;
+
+	// Increment between the seeds of SplittableRandom
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private static final ThreadLocal<SplittableRandom> THREAD_RANDOMS = ThreadLocal.withInitial(SplittableRandom::new);
+	private static final ThreadLocal<Workspace> THREAD_WORKSPACES = ThreadLocal.withInitial(Workspace::new);
+
+	/**
+	 * How complete grids are produced.
+	 */
+	public enum Mode {
+
+		/**
+		 * Fills the grid cell by cell with random digits, backtracking on dead
+		 * ends.
+		 */
+		BACKTRACKING,
+		/**
+		 * Applies random validity-preserving transformations (digit relabeling,
+		 * row and column permutations within bands and stacks, band and stack
+		 * permutations, transposition) to one of a few precomputed grids. Never
+		 * fails or backtracks, so it runs in constant time.
+		 */
+		TRANSFORMATION
+	}
+
+	private static final int[][] PERMUTATIONS_OF_3 = {
+		{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}
+	};
+
+	/**
+	 * Starting points of the transformation mode, generated once with a fixed
+	 * seed so that results only depend on the caller's generator.
+	 */
+	private static final int[][] SEED_GRIDS = new int[16][];
+
+	static {
+		SplittableRandom seedRandom = new SplittableRandom(0x5EED);
+		for (int i = 0; i < SEED_GRIDS.length; ++i)
+			SEED_GRIDS[i] = generateSudoku(seedRandom, new int[81]);
+	}
 
 	public static void main(String[] args) {
 		final int MAX = 4000000;
-		long totalTime = 0;
-		for (int attempts = 0; attempts <= MAX; ++attempts) {
-			long t = System.currentTimeMillis();
-			int[] sudoku = generateSudoku();
-			totalTime += (System.currentTimeMillis() - t);
-		}
+		SplittableRandom random = new SplittableRandom();
+		int[] sudoku = new int[81];
+
+		for (Mode mode : Mode.values()) {
+			// Warm up
+			for (int attempts = 0; attempts < MAX / 10; ++attempts)
+				generateSudoku(mode, random, sudoku);
 
-		System.out.println("Avg time: " + ((double) totalTime / MAX));
-		System.out.println("Total time: " + (totalTime/1000) + "s");
+			long checksum = 0;
+			long t = System.nanoTime();
+			for (int attempts = 0; attempts < MAX; ++attempts) {
+				generateSudoku(mode, random, sudoku);
+				checksum += sudoku[attempts % 81];
+			}
+			long totalTime = System.nanoTime() - t;
+
+			System.out.println(mode + " avg time: " + (totalTime / MAX) + "ns (checksum " + checksum + ")");
+		}
 	}
-	
+
 	private SudokuGenerator() {
 	}
 
 	public static int[] generateSudoku() {
-		int[] sudokuGrid = new int[81];
+		return generateSudoku(THREAD_RANDOMS.get(), new int[81]);
+	}
+
+	/**
+	 * Returns an infinite stream of random grids; use {@code limit} to bound
+	 * it. Element {@code i} only depends on {@code seed} and {@code i} (it is
+	 * {@link #generateSudoku(long, long) generateSudoku(seed, i)}), so the
+	 * stream can run in parallel without sharing a generator, and the same
+	 * seed always yields the same grids.
+	 */
+	public static Stream<int[]> stream(long seed) {
+		return stream(Mode.BACKTRACKING, seed);
+	}
+
+	public static Stream<int[]> stream(Mode mode, long seed) {
+		return LongStream.range(0, Long.MAX_VALUE)
+				.mapToObj(index -> generateSudoku(mode, randomFor(seed, index), new int[81]));
+	}
+
+	/**
+	 * Reproduces element {@code index} of {@link #stream(long) stream(seed)}.
+	 */
+	public static int[] generateSudoku(long seed, long index) {
+		return generateSudoku(randomFor(seed, index), new int[81]);
+	}
+
+	/**
+	 * Returns the generator used for element {@code index} of the streams
+	 * seeded with {@code seed}. Its seed is the {@code index}-th value that
+	 * {@code new SplittableRandom(seed)} would produce, computed directly
+	 * rather than by stepping through the sequence.
+	 */
+	static SplittableRandom randomFor(long seed, long index) {
+		long z = seed + (index + 1) * GOLDEN_GAMMA;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return new SplittableRandom(z ^ (z >>> 31));
+	}
+
+	public static int[] generateSudoku(Mode mode, SplittableRandom random, int[] sudokuGrid) {
+		switch (mode) {
+			case BACKTRACKING:
+				return generateSudoku(random, sudokuGrid);
+			case TRANSFORMATION:
+				return transformSudoku(random, sudokuGrid);
+			default:
+				throw new AssertionError(mode);
+		}
+	}
+
+	/**
+	 * Returns a new random complete grid of the given geometry. 9x9 grids come
+	 * from {@link #generateSudoku(SplittableRandom, int[])}. For larger ones,
+	 * where blind backtracking gets lost, the boxes on the diagonal (which do
+	 * not constrain each other) are filled with random permutations and the
+	 * propagating solver completes the grid. The digits are then relabeled at
+	 * random, since the solver tries candidates in increasing order.
+	 */
+	public static int[] generateSudoku(SudokuGeometry geometry, SplittableRandom random) {
+		if (geometry == SudokuGeometry.STANDARD)
+			return generateSudoku(random, new int[81]);
+
+		int side = geometry.getSide();
+		int boxSize = geometry.getBoxSize();
+		int[] sudoku = new int[geometry.getCells()];
+		int[] digits = new int[side];
+		SudokuSolver solver = SudokuSolver.forCurrentThread(geometry);
+		SudokuMetrics.GridEvent event = SudokuMetrics.ENABLED ? SudokuMetrics.beginGrid() : null;
+
+		// Attempts the solver could not complete
+		long backtracks = -1;
+		do {
+			++backtracks;
+
+			Arrays.fill(sudoku, 0);
+			for (int box = 0; box < boxSize; ++box) {
+				shuffleDigits(random, digits);
+
+				int first = (box * boxSize) * side + box * boxSize;
+				for (int i = 0; i < side; ++i)
+					sudoku[first + (i / boxSize) * side + i % boxSize] = digits[i];
+			}
+
+			solver.reset(sudoku);
+		} while (solver.countSolutions(1, sudoku) == 0);
+
+		shuffleDigits(random, digits);
+		for (int i = 0; i < sudoku.length; ++i)
+			sudoku[i] = digits[sudoku[i] - 1];
 
-		Random random = new Random();
+		if (event != null)
+			SudokuMetrics.endGrid(event, backtracks);
 
-		List<Integer>[] rows = new List[9];
-		List<Integer>[] columns = new List[9];
-		List<Integer>[] groups = new List[9];
-		List<Integer>[] exclusions = new List[81];
+		return sudoku;
+	}
+
+	/**
+	 * Fills {@code digits} with a random permutation of 1 to its length.
+	 */
+	private static void shuffleDigits(SplittableRandom random, int[] digits) {
+		for (int i = 0; i < digits.length; ++i) {
+			int j = random.nextInt(i + 1);
+			digits[i] = digits[j];
+			digits[j] = i + 1;
+		}
+	}
+
+	/**
+	 * Fills the given array with a random complete sudoku and returns it. The
+	 * randomness comes entirely from the given generator, and nothing is
+	 * allocated, so batch producers can reuse both.
+	 */
+	public static int[] generateSudoku(SplittableRandom random, int[] sudokuGrid) {
+		SudokuMetrics.GridEvent event = SudokuMetrics.ENABLED ? SudokuMetrics.beginGrid() : null;
+		long backtracks = 0;
+
+		Workspace workspace = THREAD_WORKSPACES.get();
+		int[] rows = workspace.rows;
+		int[] columns = workspace.columns;
+		int[] groups = workspace.groups;
+		int[] exclusions = workspace.exclusions;
 
-		// Generate arrays
 		for (int i = 0; i < 9; ++i) {
-			rows[i] = new ArrayList<>(DIGITS);
-			columns[i] = new ArrayList<>(DIGITS);
-			groups[i] = new ArrayList<>(DIGITS);
+			rows[i] = ALL_DIGITS;
+			columns[i] = ALL_DIGITS;
+			groups[i] = ALL_DIGITS;
 		}
 
+		Arrays.fill(exclusions, 0);
+
 		// Generate sudoku
 		for (int i = 0; i < 81; ++i) {
 			int rowNumber = getRow(i);
 			int columnNumber = getColumn(i);
 			int groupNumber = getGroup(i);
-			List<Integer> row = rows[rowNumber];
-			List<Integer> column = columns[columnNumber];
-			List<Integer> group = groups[groupNumber];
 
-			List<Integer> list = intersect(row, column, group);
-			List<Integer> excl = exclusions[i];
-			if (excl != null)
-				list.removeAll(excl);
+			int candidates = rows[rowNumber] & columns[columnNumber] & groups[groupNumber] & ~exclusions[i];
 
-			if (list.isEmpty()) {
+			if (candidates == 0) {
 				// Problem! Time to backtrack.
 
 				// Reset the exclusions for the current cell
-				exclusions[i] = null;
+				exclusions[i] = 0;
 
 				int prevI = i - 1;
 
 				// Re-add the previous number & add exclusion
-				int previousNumber = sudokuGrid[prevI];
-				rows[getRow(prevI)].add(previousNumber);
-				columns[getColumn(prevI)].add(previousNumber);
-				groups[getGroup(prevI)].add(previousNumber);
+				int previousBit = 1 << (sudokuGrid[prevI] - 1);
+				rows[getRow(prevI)] |= previousBit;
+				columns[getColumn(prevI)] |= previousBit;
+				groups[getGroup(prevI)] |= previousBit;
 				sudokuGrid[prevI] = 0;
 
-				excl = exclusions[prevI];
-				if (excl == null) {
-					excl = new ArrayList<>();
-					exclusions[prevI] = excl;
-				}
-
-				excl.add(previousNumber);
+				exclusions[prevI] |= previousBit;
+				++backtracks;
 
 				// Go back in time
 				i -= 2; // Decrement by 2 because the loop will add 1
 				continue;
 			}
 
-			int number = selectRandom(random, list);
-			sudokuGrid[i] = number;
-			row.remove((Integer) number);
-			column.remove((Integer) number);
-			group.remove((Integer) number);
+			int bit = selectRandom(random, candidates);
+			sudokuGrid[i] = Integer.numberOfTrailingZeros(bit) + 1;
+			rows[rowNumber] &= ~bit;
+			columns[columnNumber] &= ~bit;
+			groups[groupNumber] &= ~bit;
 		}
 
+		if (event != null)
+			SudokuMetrics.endGrid(event, backtracks);
+
 		return sudokuGrid;
 	}
 
+	/**
+	 * Fills the given array with a random transformation of one of the seed
+	 * grids, and returns it. Like {@link #generateSudoku(SplittableRandom, int[])},
+	 * nothing is allocated.
+	 */
+	public static int[] transformSudoku(SplittableRandom random, int[] sudokuGrid) {
+		SudokuMetrics.GridEvent event = SudokuMetrics.ENABLED ? SudokuMetrics.beginGrid() : null;
+
+		Workspace workspace = THREAD_WORKSPACES.get();
+		int[] digits = workspace.digits;
+		int[] rowOrder = workspace.rowOrder;
+		int[] columnOrder = workspace.columnOrder;
+
+		int[] seed = SEED_GRIDS[random.nextInt(SEED_GRIDS.length)];
+
+		// Relabel digits with a random permutation of 1-9 (digits[0] stays 0)
+		for (int d = 1; d <= 9; ++d)
+			digits[d] = d;
+
+		for (int d = 9; d > 1; --d) {
+			int j = 1 + random.nextInt(d);
+			int tmp = digits[d];
+			digits[d] = digits[j];
+			digits[j] = tmp;
+		}
+
+		permuteLines(random, rowOrder);
+		permuteLines(random, columnOrder);
+		boolean transpose = random.nextBoolean();
+
+		for (int row = 0; row < 9; ++row) {
+			for (int column = 0; column < 9; ++column) {
+				int source = transpose
+						? 9 * columnOrder[column] + rowOrder[row]
+						: 9 * rowOrder[row] + columnOrder[column];
+
+				sudokuGrid[9 * row + column] = digits[seed[source]];
+			}
+		}
+
+		// Transformations never backtrack
+		if (event != null)
+			SudokuMetrics.endGrid(event, 0);
+
+		return sudokuGrid;
+	}
+
+	/**
+	 * Picks a random order of the 9 rows (or columns) that keeps them within
+	 * their bands (or stacks): the bands are permuted, then the lines within
+	 * each band.
+	 */
+	private static void permuteLines(SplittableRandom random, int[] order) {
+		int[] bands = PERMUTATIONS_OF_3[random.nextInt(6)];
+		for (int band = 0; band < 3; ++band) {
+			int[] lines = PERMUTATIONS_OF_3[random.nextInt(6)];
+			for (int line = 0; line < 3; ++line)
+				order[3 * band + line] = 3 * bands[band] + lines[line];
+		}
+	}
+
 	public static void printSudoku(int[] sudoku) {
 		for (int i = 0; i < 81; ++i) {
 			int row = i / 9;
@@ -117,20 +333,12 @@ public class SudokuGenerator {
 	}
  
 	// Utility methods
-	private static int selectRandom(Random random, List<Integer> list) {
-		if (list.isEmpty())
-			throw new NoSuchElementException("List is empty");
+	private static int selectRandom(SplittableRandom random, int mask) {
+		// Drop a random number of the lowest set bits
+		for (int skip = random.nextInt(Integer.bitCount(mask)); skip > 0; --skip)
+			mask &= mask - 1;
 
-		if (list.size() == 1)
-			return list.get(0);
-
-		return list.get(random.nextInt(list.size()));
-	}
-
-	private static List<Integer> intersect(List<Integer> list1, List<Integer> list2, List<Integer> list3) {
-		List<Integer> result = new ArrayList<>(list1);
-		result.removeIf(i -> !list2.contains(i) || !list3.contains(i));
-		return result;
+		return Integer.lowestOneBit(mask);
 	}
 
 	private static int getRow(int i) {
@@ -145,4 +353,24 @@ public class SudokuGenerator {
 		// Java equivalent of 3*floor(i/27) + (floor(i/3) mod 3)
 		return 3 * (i / 27) + ((i / 3) % 3);
 	}
+
+	/**
+	 * Scratch arrays reused by every grid generated on a thread.
+	 */
+	private static final class Workspace {
+
+		// Bit d - 1 of these masks is set when digit d is still available
+		final int[] rows = new int[9];
+		final int[] columns = new int[9];
+		final int[] groups = new int[9];
+
+		// Digits that led to a dead end at each cell, given the cells before it
+		final int[] exclusions = new int[81];
+
+		// Transformation being applied: digit relabeling, then the source row
+		// and column of every row and column
+		final int[] digits = new int[10];
+		final int[] rowOrder = new int[9];
+		final int[] columnOrder = new int[9];
+	}
 }
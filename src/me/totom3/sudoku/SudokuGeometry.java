@@ -0,0 +1,160 @@
+package me.totom3.sudoku;
+
+/**
+ * The shape of a board made of {@code n x n} boxes of {@code n x n} cells:
+ * {@code n * n} rows, columns, boxes and digits. Cells are indexed in row-major
+ * order, units as rows ({@code 0} to {@code n * n - 1}), then columns, then
+ * boxes. Candidate sets are int masks where bit {@code d - 1} stands for digit
+ * {@code d}, which bounds the box size to 5 (25 digits).
+ * <p>
+ * The lookup tables are built once per box size; get instances through
+ * {@link #of(int)}.
+ *
+ * @author Totom3
+ */
+public final class SudokuGeometry {
+
+	public static final int MIN_BOX_SIZE = 2;
+	public static final int MAX_BOX_SIZE = 5;
+
+	private static final SudokuGeometry[] GEOMETRIES = new SudokuGeometry[MAX_BOX_SIZE + 1];
+
+	static {
+		for (int boxSize = MIN_BOX_SIZE; boxSize <= MAX_BOX_SIZE; ++boxSize)
+			GEOMETRIES[boxSize] = new SudokuGeometry(boxSize);
+	}
+
+	/**
+	 * The classic 9x9 board.
+	 */
+	public static final SudokuGeometry STANDARD = of(3);
+
+	public static SudokuGeometry of(int boxSize) {
+		if (boxSize < MIN_BOX_SIZE || boxSize > MAX_BOX_SIZE)
+			throw new IllegalArgumentException("Box size must be between " + MIN_BOX_SIZE + " and " + MAX_BOX_SIZE);
+
+		return GEOMETRIES[boxSize];
+	}
+
+	/**
+	 * Returns the geometry of grids with the given number of cells.
+	 */
+	public static SudokuGeometry forCells(int cells) {
+		for (int boxSize = MIN_BOX_SIZE; boxSize <= MAX_BOX_SIZE; ++boxSize) {
+			if (GEOMETRIES[boxSize].cells == cells)
+				return GEOMETRIES[boxSize];
+		}
+
+		throw new IllegalArgumentException("No board has " + cells + " cells");
+	}
+
+	private final int boxSize;
+	private final int side;
+	private final int cells;
+	private final int allDigits;
+
+	private final int[] rows;
+	private final int[] columns;
+	private final int[] boxes;
+
+	// For every cell, the other cells sharing its row, column or box
+	private final int[][] peers;
+
+	// The cells of every unit
+	private final int[][] units;
+
+	private SudokuGeometry(int boxSize) {
+		this.boxSize = boxSize;
+		this.side = boxSize * boxSize;
+		this.cells = side * side;
+		this.allDigits = (1 << side) - 1;
+
+		this.rows = new int[cells];
+		this.columns = new int[cells];
+		this.boxes = new int[cells];
+		for (int i = 0; i < cells; ++i) {
+			rows[i] = i / side;
+			columns[i] = i % side;
+			boxes[i] = boxSize * (rows[i] / boxSize) + columns[i] / boxSize;
+		}
+
+		this.units = new int[3 * side][side];
+		int[] unitSizes = new int[3 * side];
+		for (int i = 0; i < cells; ++i) {
+			int row = rows[i], column = side + columns[i], box = 2 * side + boxes[i];
+			units[row][unitSizes[row]++] = i;
+			units[column][unitSizes[column]++] = i;
+			units[box][unitSizes[box]++] = i;
+		}
+
+		int numberOfPeers = 2 * (side - 1) + (boxSize - 1) * (boxSize - 1);
+		this.peers = new int[cells][numberOfPeers];
+		for (int i = 0; i < cells; ++i) {
+			int count = 0;
+			for (int j = 0; j < cells; ++j) {
+				if (i != j && (rows[i] == rows[j] || columns[i] == columns[j] || boxes[i] == boxes[j]))
+					peers[i][count++] = j;
+			}
+		}
+	}
+
+	public int getBoxSize() {
+		return boxSize;
+	}
+
+	/**
+	 * Returns the number of rows, which is also the number of columns, boxes
+	 * and digits.
+	 */
+	public int getSide() {
+		return side;
+	}
+
+	public int getCells() {
+		return cells;
+	}
+
+	public int getUnits() {
+		return 3 * side;
+	}
+
+	/**
+	 * Returns the mask holding every digit.
+	 */
+	public int getAllDigits() {
+		return allDigits;
+	}
+
+	public int getRow(int cell) {
+		return rows[cell];
+	}
+
+	public int getColumn(int cell) {
+		return columns[cell];
+	}
+
+	public int getBox(int cell) {
+		return boxes[cell];
+	}
+
+	/**
+	 * Returns the cells sharing a row, column or box with the given one. The
+	 * array is shared and must not be modified.
+	 */
+	public int[] getPeers(int cell) {
+		return peers[cell];
+	}
+
+	/**
+	 * Returns the cells of a unit, in row-major order. The array is shared and
+	 * must not be modified.
+	 */
+	public int[] getUnit(int unit) {
+		return units[unit];
+	}
+
+	@Override
+	public String toString() {
+		return side + "x" + side;
+	}
+}
@@ -1,95 +1,405 @@
 package me.totom3.sudoku;
 
-import java.util.Collections;
-import java.util.LinkedList;
-import java.util.ListIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 /**
+ * Digs holes in complete grids while keeping their solution unique. Grids of
+ * any {@link SudokuGeometry} are accepted, their geometry being deduced from
+ * their length; only the backtracking engine handles sizes other than 9x9.
  *
  * @author Totom3
  */
 public class SudokuMaskGenerator {
 
-	private static final int[] MASK_1 = new int[81];
+	private static final long NO_DEADLINE = Long.MAX_VALUE;
 
-	static {
-		for (int i = 0; i < 81; ++i)
-			MASK_1[i] = 1;
-	}
-	
 	public static int[] generateMask(int[] sudoku, int holes) {
-		return new SudokuMaskGenerator(sudoku, holes).generateMask();
+		return generateMask(sudoku, holes, SudokuEngineType.BACKTRACKING);
+	}
+
+	/**
+	 * Digs holes in the given complete grid, keeping its solution unique. The
+	 * engine checks uniqueness; the backtracking one follows the removed clues
+	 * incrementally instead of solving every candidate grid from scratch.
+	 */
+	public static int[] generateMask(int[] sudoku, int holes, SudokuEngineType engineType) {
+		return new SudokuMaskGenerator(sudoku, holes, engineType, NO_DEADLINE, null, newRandom()).generateMask();
+	}
+
+	/**
+	 * Same as {@link #generateMask(int[], int)}, with all randomness taken from
+	 * the given generator so that the mask can be reproduced.
+	 */
+	public static int[] generateMask(int[] sudoku, int holes, SplittableRandom random) {
+		return new SudokuMaskGenerator(sudoku, holes, SudokuEngineType.BACKTRACKING, NO_DEADLINE, null, random).generateMask();
+	}
+
+	/**
+	 * Returns an infinite stream of puzzles with the given number of holes;
+	 * use {@code limit} to bound it. Element {@code i} is
+	 * {@link #generatePuzzle(long, long, int) generatePuzzle(seed, i, holes)},
+	 * which only depends on its arguments, so the stream can run in parallel
+	 * and any puzzle can be reproduced from the seed and its index.
+	 */
+	public static Stream<SudokuPuzzle> stream(long seed, int holes) {
+		return LongStream.range(0, Long.MAX_VALUE)
+				.mapToObj(index -> generatePuzzle(seed, index, holes));
+	}
+
+	public static SudokuPuzzle generatePuzzle(long seed, long index, int holes) {
+		return generatePuzzle(SudokuGeometry.STANDARD, seed, index, holes);
+	}
+
+	public static SudokuPuzzle generatePuzzle(SudokuGeometry geometry, long seed, long index, int holes) {
+		// The grid and its mask share the element's generator
+		SplittableRandom random = SudokuGenerator.randomFor(seed, index);
+		int[] sudoku = SudokuGenerator.generateSudoku(geometry, random);
+		return new SudokuPuzzle(sudoku, generateMask(sudoku, holes, random));
+	}
+
+	/**
+	 * Same as {@link #generateMask(int[], int)}, but gives up once the timeout
+	 * has elapsed and returns the mask with the most holes found so far. The
+	 * same happens when the search runs out of options, which is what
+	 * eventually happens when asking for more holes than the grid allows.
+	 */
+	public static int[] generateMask(int[] sudoku, int holes, long timeout, TimeUnit unit) {
+		return generateMask(sudoku, holes, SudokuEngineType.BACKTRACKING, timeout, unit);
+	}
+
+	public static int[] generateMask(int[] sudoku, int holes, SudokuEngineType engineType, long timeout, TimeUnit unit) {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		return new SudokuMaskGenerator(sudoku, holes, engineType, deadline, null, newRandom()).generateMask();
+	}
+
+	/**
+	 * Runs one independent, randomized search per thread of the given pool.
+	 * The first search to reach the requested number of holes wins, and the
+	 * others stop at their next step. The pool's parallelism sets the number
+	 * of searches.
+	 */
+	public static int[] generateMask(int[] sudoku, int holes, ForkJoinPool pool) {
+		return generateMask(sudoku, holes, SudokuEngineType.BACKTRACKING, pool);
+	}
+
+	public static int[] generateMask(int[] sudoku, int holes, SudokuEngineType engineType, ForkJoinPool pool) {
+		return pool.invoke(new ParallelSearch(sudoku, holes, engineType, NO_DEADLINE, pool.getParallelism()));
+	}
+
+	/**
+	 * Parallel version of {@link #generateMask(int[], int, long, TimeUnit)};
+	 * when no search succeeds in time, the mask with the most holes among all
+	 * searches is returned.
+	 */
+	public static int[] generateMask(int[] sudoku, int holes, ForkJoinPool pool, long timeout, TimeUnit unit) {
+		return generateMask(sudoku, holes, SudokuEngineType.BACKTRACKING, pool, timeout, unit);
 	}
 
+	public static int[] generateMask(int[] sudoku, int holes, SudokuEngineType engineType, ForkJoinPool pool, long timeout, TimeUnit unit) {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		return pool.invoke(new ParallelSearch(sudoku, holes, engineType, deadline, pool.getParallelism()));
+	}
+
+	private final int cells;
+	private final int[] solution;
 	private final int[] sudoku;
 	private final int[] mask;
 	private final int numberOfHoles;
+	private final long deadline;
+	private final SplittableRandom random;
+
+	// Set by the first of several parallel searches to succeed; null when
+	// searching alone
+	private final AtomicReference<int[]> winner;
 
-	private boolean solved;
+	// Exactly one of these is set
+	private final SudokuSolver solver;
+	private final SudokuEngine engine;
 
-	private SudokuMaskGenerator(int[] sudoku, int numberOfHoles) {
-		this.sudoku = new int[81];
-		System.arraycopy(sudoku, 0, this.sudoku, 0, 81);
+	// Only counted when metrics are enabled
+	private long holeAttempts;
+	private long rejectedHoles;
+	private int maxDepth;
 
-		this.mask = new int[81];
-		System.arraycopy(MASK_1, 0, this.mask, 0, 81);
+	private SudokuMaskGenerator(int[] sudoku, int numberOfHoles, SudokuEngineType engineType, long deadline, AtomicReference<int[]> winner, SplittableRandom random) {
+		SudokuGeometry geometry = SudokuGeometry.forCells(sudoku.length);
+		if (geometry != SudokuGeometry.STANDARD && engineType != SudokuEngineType.BACKTRACKING)
+			throw new IllegalArgumentException(engineType + " only handles 9x9 grids");
+
+		this.cells = geometry.getCells();
+		this.solution = sudoku.clone();
+		this.sudoku = sudoku.clone();
+
+		this.mask = new int[cells];
+		Arrays.fill(mask, 1);
 
 		this.numberOfHoles = numberOfHoles;
+		this.deadline = deadline;
+		this.winner = winner;
+		this.random = random;
+
+		if (engineType == SudokuEngineType.BACKTRACKING) {
+			this.solver = SudokuSolver.forCurrentThread(geometry);
+			this.engine = null;
+			solver.reset(this.sudoku);
+		} else {
+			this.solver = null;
+			this.engine = engineType.forCurrentThread();
+		}
 	}
 
+	/**
+	 * Depth-first search for a set of holes keeping the solution unique.
+	 * <p>
+	 * The cells are kept in a single permutation. The holes at depth {@code d}
+	 * are tried among {@code options[positions[d - 1] + 1 ..]}, so a depth
+	 * only ever considers the cells its parent hasn't tried yet; these are
+	 * reshuffled in place before descending. Since a depth only reorders cells
+	 * past its own position, the parents' remaining options are still the
+	 * same set of cells when the search comes back to them.
+	 */
 	private int[] generateMask() {
+		SudokuMetrics.MaskEvent event = SudokuMetrics.ENABLED ? SudokuMetrics.beginMask() : null;
+		int[] result = digHoles();
 
-		LinkedList<Integer> options = new LinkedList<>();
-		for (int i = 0; i < 81; ++i) {
-			options.add(i);
-		}
-
-		Collections.shuffle(options);
-		makeHole(0, options);
+		if (event != null)
+			SudokuMetrics.endMask(event, numberOfHoles, countHoles(result), holeAttempts, rejectedHoles, maxDepth);
 
-		return mask;
+		return result;
 	}
 
-	private void makeHole(int depth, LinkedList<Integer> options) {
-		for (ListIterator<Integer> it = options.listIterator(); it.hasNext();) {
-			int index = it.next();
-			int value = sudoku[index];
-			mask[index] = 0;
-			sudoku[index] = 0;
+	private int[] digHoles() {
+		if (numberOfHoles <= 0)
+			return mask;
+
+		int[] options = new int[cells];
+		for (int i = 0; i < cells; ++i)
+			options[i] = i;
+
+		shuffle(random, options, 0);
+
+		int[] positions = new int[numberOfHoles];
+		int[] bestMask = mask.clone();
+		int bestHoles = 0;
+
+		// The number of holes made so far
+		int depth = 0;
+
+		while (depth >= 0) {
+			if (shouldStop())
+				break;
+
+			int position = positions[depth];
+			if (position == cells) {
+				// Every option failed at this depth; backtrack
+				if (--depth >= 0) {
+					int index = options[positions[depth]];
+					restoreClue(index, solution[index]);
+					++positions[depth];
+				}
 
-			SudokuSolver solver = new SudokuSolver(sudoku);
-			if (solver.getSolutions(2).size() != 1) {
-				mask[index] = 1;
-				sudoku[index] = value;
-				it.remove();
 				continue;
 			}
 
-			if (depth >= numberOfHoles) {
+			int index = options[position];
+			int value = solution[index];
+			removeClue(index);
+
+			if (SudokuMetrics.ENABLED)
+				++holeAttempts;
+
+			if (hasAlternative(index, value)) {
+				if (SudokuMetrics.ENABLED)
+					++rejectedHoles;
+
+				restoreClue(index, value);
+				++positions[depth];
+				continue;
+			}
+
+			if (SudokuMetrics.ENABLED && depth + 1 > maxDepth)
+				maxDepth = depth + 1;
+
+			if (++depth == numberOfHoles) {
 				// Found solution
-				solved = true;
-			} else {
-				makeHole(depth + 1, removeFirstAndShuffleCopy(options));
-				if (solved) {
-					return;
-				}
+				if (winner != null)
+					winner.compareAndSet(null, mask);
+
+				return mask;
 			}
 
-			mask[index] = 1;
-			sudoku[index] = value;
-			it.remove();
+			if (depth > bestHoles) {
+				bestHoles = depth;
+				System.arraycopy(mask, 0, bestMask, 0, cells);
+			}
+
+			shuffle(random, options, position + 1);
+			positions[depth] = position + 1;
+		}
+
+		return bestMask;
+	}
+
+	private boolean shouldStop() {
+		if (deadline != NO_DEADLINE && System.nanoTime() - deadline >= 0)
+			return true;
+
+		return winner != null && winner.get() != null;
+	}
+
+	/**
+	 * Checks whether the grid has a solution other than the original one once
+	 * the clue at {@code index} has been removed. The grid had a unique
+	 * solution before the removal, so any other solution must put another digit
+	 * in that cell; it suffices to look for a completion with each of the other
+	 * candidates, which is much cheaper than counting solutions.
+	 */
+	private boolean hasAlternative(int index, int value) {
+		int alternatives = getCandidateMask(index) & ~(1 << (value - 1));
+
+		while (alternatives != 0) {
+			int bit = Integer.lowestOneBit(alternatives);
+			alternatives ^= bit;
+
+			if (hasSolutionWith(index, Integer.numberOfTrailingZeros(bit) + 1))
+				return true;
+		}
+
+		return false;
+	}
+
+	private boolean hasSolutionWith(int index, int digit) {
+		int count;
+		if (solver != null) {
+			solver.placeClue(index, digit);
+			count = solver.countSolutions(1);
+			solver.removeClue(index);
+		} else {
+			sudoku[index] = digit;
+			count = engine.countSolutions(sudoku, 1);
+			sudoku[index] = 0;
 		}
+
+		return count > 0;
 	}
 
-	private static LinkedList<Integer> removeFirstAndShuffleCopy(LinkedList<Integer> list) {
-		LinkedList<Integer> copy = new LinkedList<>(list);
-		if (copy.isEmpty()) {
-			return copy;
+	private int getCandidateMask(int index) {
+		if (solver != null)
+			return solver.getCandidateMask(index);
+
+		// Other engines are restricted to 9x9 grids
+		int row = 9 * (index / 9);
+		int column = index % 9;
+		int group = 27 * (index / 27) + 3 * (column / 3);
+
+		// Shifting right drops the bit of empty cells
+		int used = 0;
+		for (int i = 0; i < 9; ++i) {
+			used |= (1 << sudoku[row + i]) >>> 1;
+			used |= (1 << sudoku[9 * i + column]) >>> 1;
+			used |= (1 << sudoku[group + 9 * (i / 3) + i % 3]) >>> 1;
 		}
 
-		copy.removeFirst();
-		Collections.shuffle(copy);
+		return ~used & 0x1FF;
+	}
+
+	private void removeClue(int index) {
+		mask[index] = 0;
+		sudoku[index] = 0;
+		if (solver != null)
+			solver.removeClue(index);
+	}
+
+	private void restoreClue(int index, int value) {
+		mask[index] = 1;
+		sudoku[index] = value;
+		if (solver != null)
+			solver.placeClue(index, value);
+	}
 
-		return copy;
+	/**
+	 * Shuffles {@code array[from ..]} in place.
+	 */
+	private static void shuffle(SplittableRandom random, int[] array, int from) {
+		for (int i = array.length - 1; i > from; --i) {
+			int j = from + random.nextInt(i - from + 1);
+			int tmp = array[i];
+			array[i] = array[j];
+			array[j] = tmp;
+		}
+	}
+
+	private static SplittableRandom newRandom() {
+		return new SplittableRandom(ThreadLocalRandom.current().nextLong());
+	}
+
+	private static int countHoles(int[] mask) {
+		int holes = 0;
+		for (int i = 0; i < mask.length; ++i) {
+			if (mask[i] == 0)
+				++holes;
+		}
+
+		return holes;
+	}
+
+	private static final class ParallelSearch extends RecursiveTask<int[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] sudoku;
+		private final int holes;
+		private final SudokuEngineType engineType;
+		private final long deadline;
+		private final int searches;
+
+		ParallelSearch(int[] sudoku, int holes, SudokuEngineType engineType, long deadline, int searches) {
+			this.sudoku = sudoku.clone();
+			this.holes = holes;
+			this.engineType = engineType;
+			this.deadline = deadline;
+			this.searches = searches;
+		}
+
+		@Override
+		protected int[] compute() {
+			AtomicReference<int[]> winner = new AtomicReference<>();
+
+			List<ForkJoinTask<int[]>> tasks = new ArrayList<>(searches);
+			for (int i = 0; i < searches; ++i) {
+				// Each search grabs the solver of the thread that runs it
+				tasks.add(ForkJoinTask.adapt(() -> new SudokuMaskGenerator(sudoku, holes, engineType, deadline, winner, newRandom()).generateMask()));
+			}
+
+			invokeAll(tasks);
+
+			int[] result = winner.get();
+			if (result != null)
+				return result;
+
+			// Nobody made it; keep the best attempt
+			int bestHoles = -1;
+			for (ForkJoinTask<int[]> task : tasks) {
+				int[] mask = task.join();
+				int maskHoles = countHoles(mask);
+				if (maskHoles > bestHoles) {
+					bestHoles = maskHoles;
+					result = mask;
+				}
+			}
+
+			return result;
+		}
 	}
 }
@@ -0,0 +1,275 @@
+package me.totom3.sudoku;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Opt-in instrumentation of the solver and the generators, enabled by
+ * starting the JVM with {@code -Dme.totom3.sudoku.metrics=true}. When enabled,
+ * every grid generation, mask generation and solver search adds to counters
+ * and latency histograms, published through {@link SudokuMetricsMXBean} and
+ * emitted as Flight Recorder events in the {@code Sudoku} category.
+ * <p>
+ * The instrumented code only calls in here behind {@link #ENABLED}, which is
+ * a constant, so when disabled the JIT compiles the calls away. Hot loops
+ * count in plain fields of their own, which are added here once per phase.
+ *
+ * @author Totom3
+ */
+public final class SudokuMetrics {
+
+	public static final boolean ENABLED = Boolean.getBoolean("me.totom3.sudoku.metrics");
+
+	public static final String OBJECT_NAME = "me.totom3.sudoku:type=SudokuMetrics";
+
+	private static final LongAdder SOLVER_NODES = new LongAdder();
+	private static final LongAdder SOLVER_BACKTRACKS = new LongAdder();
+	private static final LongAdder SOLVER_DEAD_ENDS = new LongAdder();
+	private static final LongAdder SOLVER_SOLUTIONS = new LongAdder();
+	private static final LongAdder MASK_HOLE_ATTEMPTS = new LongAdder();
+	private static final LongAdder MASK_REJECTED_HOLES = new LongAdder();
+	private static final LongAccumulator MASK_MAX_DEPTH = new LongAccumulator(Math::max, 0);
+	private static final LongAdder GENERATOR_BACKTRACKS = new LongAdder();
+
+	// Histograms are not thread-safe, so every thread records in its own and
+	// they are merged when read. The merge races with recording, which is
+	// fine for monitoring.
+	private static final List<ThreadHistograms> ALL_HISTOGRAMS = new CopyOnWriteArrayList<>();
+	private static final ThreadLocal<ThreadHistograms> THREAD_HISTOGRAMS = ThreadLocal.withInitial(() -> {
+		ThreadHistograms histograms = new ThreadHistograms();
+		ALL_HISTOGRAMS.add(histograms);
+		return histograms;
+	});
+
+	static {
+		if (ENABLED) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBeanImpl(), new ObjectName(OBJECT_NAME));
+			} catch (JMException ex) {
+				// Keep counting; the numbers are still in the events
+				ex.printStackTrace();
+			}
+		}
+	}
+
+	private SudokuMetrics() {
+	}
+
+	// Grid generation
+	static GridEvent beginGrid() {
+		return begin(new GridEvent());
+	}
+
+	static void endGrid(GridEvent event, long backtracks) {
+		GENERATOR_BACKTRACKS.add(backtracks);
+		THREAD_HISTOGRAMS.get().grid.record(event.elapsed());
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.backtracks = backtracks;
+			event.commit();
+		}
+	}
+
+	// Mask generation
+	static MaskEvent beginMask() {
+		return begin(new MaskEvent());
+	}
+
+	static void endMask(MaskEvent event, int requestedHoles, int holes, long attempts, long rejected, int maxDepth) {
+		MASK_HOLE_ATTEMPTS.add(attempts);
+		MASK_REJECTED_HOLES.add(rejected);
+		MASK_MAX_DEPTH.accumulate(maxDepth);
+		THREAD_HISTOGRAMS.get().mask.record(event.elapsed());
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.requestedHoles = requestedHoles;
+			event.holes = holes;
+			event.holeAttempts = attempts;
+			event.rejectedHoles = rejected;
+			event.maxDepth = maxDepth;
+			event.commit();
+		}
+	}
+
+	// Solver searches
+	static SolveEvent beginSolve() {
+		return begin(new SolveEvent());
+	}
+
+	static void endSolve(SolveEvent event, long nodes, long backtracks, long deadEnds, int solutions) {
+		SOLVER_NODES.add(nodes);
+		SOLVER_BACKTRACKS.add(backtracks);
+		SOLVER_DEAD_ENDS.add(deadEnds);
+		SOLVER_SOLUTIONS.add(solutions);
+		THREAD_HISTOGRAMS.get().solve.record(event.elapsed());
+
+		event.end();
+		if (event.shouldCommit()) {
+			event.nodes = nodes;
+			event.backtracks = backtracks;
+			event.deadEnds = deadEnds;
+			event.solutions = solutions;
+			event.commit();
+		}
+	}
+
+	private static <E extends PhaseEvent> E begin(E event) {
+		event.startNanos = System.nanoTime();
+		event.begin();
+		return event;
+	}
+
+	private static SudokuMetricsMXBean.LatencySummary summarize(Function<ThreadHistograms, LatencyHistogram> phase) {
+		LatencyHistogram merged = new LatencyHistogram();
+		for (ThreadHistograms histograms : ALL_HISTOGRAMS)
+			merged.add(phase.apply(histograms));
+
+		return new SudokuMetricsMXBean.LatencySummary(merged);
+	}
+
+	private static final class ThreadHistograms {
+
+		final LatencyHistogram grid = new LatencyHistogram();
+		final LatencyHistogram mask = new LatencyHistogram();
+		final LatencyHistogram solve = new LatencyHistogram();
+	}
+
+	private static final class MXBeanImpl implements SudokuMetricsMXBean {
+
+		@Override
+		public long getSolverNodes() {
+			return SOLVER_NODES.sum();
+		}
+
+		@Override
+		public long getSolverBacktracks() {
+			return SOLVER_BACKTRACKS.sum();
+		}
+
+		@Override
+		public long getSolverDeadEnds() {
+			return SOLVER_DEAD_ENDS.sum();
+		}
+
+		@Override
+		public long getSolverSolutions() {
+			return SOLVER_SOLUTIONS.sum();
+		}
+
+		@Override
+		public long getMaskHoleAttempts() {
+			return MASK_HOLE_ATTEMPTS.sum();
+		}
+
+		@Override
+		public long getMaskRejectedHoles() {
+			return MASK_REJECTED_HOLES.sum();
+		}
+
+		@Override
+		public long getMaskMaxDepth() {
+			return MASK_MAX_DEPTH.get();
+		}
+
+		@Override
+		public long getGeneratorBacktracks() {
+			return GENERATOR_BACKTRACKS.sum();
+		}
+
+		@Override
+		public LatencySummary getGridLatency() {
+			return summarize(histograms -> histograms.grid);
+		}
+
+		@Override
+		public LatencySummary getMaskLatency() {
+			return summarize(histograms -> histograms.mask);
+		}
+
+		@Override
+		public LatencySummary getSolveLatency() {
+			return summarize(histograms -> histograms.solve);
+		}
+	}
+
+	/**
+	 * Events spanning one phase. The start time is kept apart from the
+	 * event's own for the histograms; transient fields are not recorded.
+	 */
+	@Category("Sudoku")
+	@StackTrace(false)
+	abstract static class PhaseEvent extends Event {
+
+		transient long startNanos;
+
+		long elapsed() {
+			return System.nanoTime() - startNanos;
+		}
+	}
+
+	@Name("me.totom3.sudoku.GridGeneration")
+	@Label("Grid Generation")
+	static final class GridEvent extends PhaseEvent {
+
+		@Label("Backtracks")
+		long backtracks;
+	}
+
+	@Name("me.totom3.sudoku.MaskGeneration")
+	@Label("Mask Generation")
+	static final class MaskEvent extends PhaseEvent {
+
+		@Label("Requested Holes")
+		int requestedHoles;
+
+		@Label("Holes")
+		int holes;
+
+		@Label("Hole Attempts")
+		long holeAttempts;
+
+		@Label("Rejected Holes")
+		long rejectedHoles;
+
+		@Label("Max Depth")
+		int maxDepth;
+	}
+
+	/**
+	 * Mask generation runs thousands of searches, so only the slow ones are
+	 * recorded unless the recording's settings say otherwise.
+	 */
+	@Name("me.totom3.sudoku.Solve")
+	@Label("Solve")
+	@Description("One search of the backtracking solver")
+	@Threshold("1 ms")
+	static final class SolveEvent extends PhaseEvent {
+
+		@Label("Nodes")
+		long nodes;
+
+		@Label("Backtracks")
+		long backtracks;
+
+		@Label("Dead Ends")
+		long deadEnds;
+
+		@Label("Solutions")
+		int solutions;
+	}
+}
@@ -0,0 +1,102 @@
+package me.totom3.sudoku;
+
+import javax.management.ConstructorParameters;
+
+/**
+ * The JMX view of {@link SudokuMetrics}, registered as
+ * {@value SudokuMetrics#OBJECT_NAME} when metrics are enabled. Counters are
+ * totals since startup.
+ *
+ * @author Totom3
+ */
+public interface SudokuMetricsMXBean {
+
+	/**
+	 * Returns the number of cells the solver branched on.
+	 */
+	long getSolverNodes();
+
+	/**
+	 * Returns the number of candidates the solver tried and took back without
+	 * reaching its solution limit.
+	 */
+	long getSolverBacktracks();
+
+	/**
+	 * Returns the number of times the solver found an empty cell without
+	 * candidates, or a contradiction while propagating.
+	 */
+	long getSolverDeadEnds();
+
+	long getSolverSolutions();
+
+	/**
+	 * Returns the number of clues the mask generator tried to remove.
+	 */
+	long getMaskHoleAttempts();
+
+	/**
+	 * Returns the number of removals the mask generator took back because
+	 * the solution stopped being unique.
+	 */
+	long getMaskRejectedHoles();
+
+	/**
+	 * Returns the most holes any search of the mask generator had at once.
+	 */
+	long getMaskMaxDepth();
+
+	/**
+	 * Returns the number of times grid generation stepped back to the
+	 * previous cell after running out of digits.
+	 */
+	long getGeneratorBacktracks();
+
+	LatencySummary getGridLatency();
+
+	LatencySummary getMaskLatency();
+
+	LatencySummary getSolveLatency();
+
+	/**
+	 * Percentiles of the durations of one phase, in microseconds.
+	 */
+	final class LatencySummary {
+
+		private final long count;
+		private final double median;
+		private final double percentile99;
+		private final double max;
+
+		/**
+		 * Used by JMX clients to rebuild a summary read through a proxy.
+		 */
+		@ConstructorParameters({"count", "median", "percentile99", "max"})
+		public LatencySummary(long count, double median, double percentile99, double max) {
+			this.count = count;
+			this.median = median;
+			this.percentile99 = percentile99;
+			this.max = max;
+		}
+
+		LatencySummary(LatencyHistogram histogram) {
+			this(histogram.getCount(), histogram.getPercentile(50) / 1e3, histogram.getPercentile(99) / 1e3, histogram.getMax() / 1e3);
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public double getMedian() {
+			return median;
+		}
+
+		public double getPercentile99() {
+			return percentile99;
+		}
+
+		public double getMax() {
+			return max;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package me.totom3.sudoku;
+
+/**
+ * A complete grid together with the mask of its clues, as produced by
+ * {@link SudokuGenerator} and {@link SudokuMaskGenerator}. A mask entry of
+ * {@code 1} means the cell is given, {@code 0} that it is a hole. The grid may
+ * have any {@link SudokuGeometry}.
+ *
+ * @author Totom3
+ */
+public final class SudokuPuzzle {
+
+	private final int[] solution;
+	private final int[] mask;
+
+	public SudokuPuzzle(int[] solution, int[] mask) {
+		if (mask.length != solution.length)
+			throw new IllegalArgumentException("The solution and mask have different sizes");
+
+		// Rejects sizes that are no board
+		SudokuGeometry.forCells(solution.length);
+
+		this.solution = solution;
+		this.mask = mask;
+	}
+
+	public int[] getSolution() {
+		return solution;
+	}
+
+	public int[] getMask() {
+		return mask;
+	}
+
+	public SudokuGeometry getGeometry() {
+		return SudokuGeometry.forCells(solution.length);
+	}
+
+	/**
+	 * Returns a new grid holding the clues only, with holes set to {@code 0}.
+	 */
+	public int[] getClues() {
+		int[] clues = new int[solution.length];
+		for (int i = 0; i < solution.length; ++i)
+			clues[i] = (mask[i] == 1) ? solution[i] : 0;
+
+		return clues;
+	}
+
+	public int getNumberOfHoles() {
+		int holes = 0;
+		for (int i = 0; i < mask.length; ++i) {
+			if (mask[i] == 0)
+				++holes;
+		}
+
+		return holes;
+	}
+}
@@ -0,0 +1,624 @@
+package me.totom3.sudoku;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Rates puzzles the way a person solves them. Logical techniques are tried
+ * from the simplest up, going back to the simplest after every step, until
+ * the grid is full or none of them applies any more. The rating is the
+ * hardest technique needed together with the number of steps taken; puzzles
+ * the techniques cannot finish are rated {@link Technique#TRIAL_AND_ERROR}.
+ * Puzzles are assumed to have a unique solution.
+ * <p>
+ * Candidates are bitmasks as in {@link SudokuSolver}. Ratings are cached and
+ * shared between threads, so rating a puzzle again is a lookup. 9x9 puzzles
+ * are rated and cached in their {@link SudokuCanonicalizer canonical form},
+ * which gives every puzzle equivalent to a rated one the same rating straight
+ * from the cache; other sizes are cached by their clues. Raters themselves are
+ * not thread-safe.
+ *
+ * @author Totom3
+ */
+public class SudokuRater {
+
+	/**
+	 * The techniques known to the rater, from the easiest to the hardest.
+	 */
+	public enum Technique {
+
+		/**
+		 * A digit fits in only one cell of a row, column or group.
+		 */
+		HIDDEN_SINGLE,
+		/**
+		 * A cell has only one candidate left.
+		 */
+		NAKED_SINGLE,
+		/**
+		 * The candidates for a digit in a group all lie on one line, so the
+		 * digit is removed from the rest of that line.
+		 */
+		POINTING,
+		/**
+		 * The candidates for a digit on a line all lie in one group, so the
+		 * digit is removed from the rest of that group.
+		 */
+		CLAIMING,
+		/**
+		 * Two cells of a unit share the same two candidates, which are
+		 * removed from the other cells of the unit.
+		 */
+		NAKED_PAIR,
+		/**
+		 * Two digits fit in only the same two cells of a unit, which lose
+		 * their other candidates.
+		 */
+		HIDDEN_PAIR,
+		NAKED_TRIPLE,
+		HIDDEN_TRIPLE,
+		/**
+		 * A digit fits in exactly the same two columns on two rows, so it is
+		 * removed from the rest of those columns; or the same with rows and
+		 * columns swapped.
+		 */
+		X_WING,
+		/**
+		 * None of the techniques above finishes the puzzle.
+		 */
+		TRIAL_AND_ERROR
+	}
+
+	/**
+	 * How hard a puzzle is. Ratings are ordered by their hardest technique,
+	 * then by number of steps.
+	 */
+	public static final class Rating implements Comparable<Rating> {
+
+		private final Technique hardestTechnique;
+		private final int steps;
+
+		Rating(Technique hardestTechnique, int steps) {
+			this.hardestTechnique = hardestTechnique;
+			this.steps = steps;
+		}
+
+		public Technique getHardestTechnique() {
+			return hardestTechnique;
+		}
+
+		/**
+		 * Returns the number of placements and eliminations made, up to the
+		 * point where the techniques ran out for puzzles rated
+		 * {@link Technique#TRIAL_AND_ERROR}.
+		 */
+		public int getSteps() {
+			return steps;
+		}
+
+		public boolean isSolvedByLogic() {
+			return hardestTechnique != Technique.TRIAL_AND_ERROR;
+		}
+
+		@Override
+		public int compareTo(Rating other) {
+			int result = hardestTechnique.compareTo(other.hardestTechnique);
+			return (result != 0) ? result : Integer.compare(steps, other.steps);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Rating))
+				return false;
+
+			Rating other = (Rating) obj;
+			return hardestTechnique == other.hardestTechnique && steps == other.steps;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(hardestTechnique, steps);
+		}
+
+		@Override
+		public String toString() {
+			return hardestTechnique + "/" + steps;
+		}
+	}
+
+	// Direct-mapped: a puzzle evicts whichever one shared its slot. Entries
+	// are immutable, so threads may race on a slot without locking.
+	private static final int CACHE_SIZE = 1 << 14;
+	private static final CacheEntry[] CACHE = new CacheEntry[CACHE_SIZE];
+
+	// One rater per geometry, indexed by box size
+	private static final ThreadLocal<SudokuRater[]> THREAD_RATERS = ThreadLocal.withInitial(() -> new SudokuRater[SudokuGeometry.MAX_BOX_SIZE + 1]);
+
+	/**
+	 * Returns a 9x9 rater confined to the calling thread, which must not let
+	 * it escape to other threads.
+	 */
+	public static SudokuRater forCurrentThread() {
+		return forCurrentThread(SudokuGeometry.STANDARD);
+	}
+
+	/**
+	 * Same as {@link #forCurrentThread()}, for puzzles of the given geometry.
+	 */
+	public static SudokuRater forCurrentThread(SudokuGeometry geometry) {
+		SudokuRater[] raters = THREAD_RATERS.get();
+		SudokuRater rater = raters[geometry.getBoxSize()];
+		if (rater == null) {
+			rater = new SudokuRater(geometry);
+			raters[geometry.getBoxSize()] = rater;
+		}
+
+		return rater;
+	}
+
+	private final SudokuGeometry geometry;
+	private final int side;
+	private final int cells;
+
+	private final int[] values;
+	// Candidates of the empty cells; 0 once a cell is filled
+	private final int[] candidates;
+	private int emptyCells;
+	private boolean contradictory;
+
+	// Scratch space for the subset and X-wing searches
+	private final int[] subset;
+	private final int[] positions;
+	private final int[] lineMasks;
+
+	public SudokuRater() {
+		this(SudokuGeometry.STANDARD);
+	}
+
+	public SudokuRater(SudokuGeometry geometry) {
+		this.geometry = geometry;
+		this.side = geometry.getSide();
+		this.cells = geometry.getCells();
+
+		this.values = new int[cells];
+		this.candidates = new int[cells];
+		this.subset = new int[side];
+		this.positions = new int[side];
+		this.lineMasks = new int[side];
+	}
+
+	public SudokuGeometry getGeometry() {
+		return geometry;
+	}
+
+	public Rating rate(SudokuPuzzle puzzle) {
+		return rate(puzzle.getClues());
+	}
+
+	/**
+	 * Rates the puzzle made of the given clues, {@code 0} meaning an empty
+	 * cell.
+	 *
+	 * @throws IllegalArgumentException if the clues do not fit this rater's
+	 * geometry or contradict each other
+	 */
+	public Rating rate(int[] clues) {
+		if (clues.length != cells)
+			throw new IllegalArgumentException("Expected " + cells + " cells, got " + clues.length);
+
+		// The order of the steps, hence their number, may differ between
+		// equivalent puzzles; rating the canonical form keeps them consistent
+		if (geometry == SudokuGeometry.STANDARD)
+			clues = SudokuCanonicalizer.forCurrentThread().canonicalize(clues);
+
+		String key = cacheKey(clues);
+		int slot = spread(key.hashCode()) & (CACHE_SIZE - 1);
+		CacheEntry entry = CACHE[slot];
+		if (entry != null && entry.key.equals(key))
+			return entry.rating;
+
+		Rating rating = rateUncached(clues);
+		CACHE[slot] = new CacheEntry(key, rating);
+		return rating;
+	}
+
+	/**
+	 * Rates a puzzle as given, without looking at or filling the cache.
+	 */
+	Rating rateUncached(int[] clues) {
+		if (clues.length != cells)
+			throw new IllegalArgumentException("Expected " + cells + " cells, got " + clues.length);
+
+		return solve(clues);
+	}
+
+	private static String cacheKey(int[] clues) {
+		char[] chars = new char[clues.length];
+		for (int i = 0; i < clues.length; ++i)
+			chars[i] = (char) ('0' + clues[i]);
+
+		return new String(chars);
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private Rating solve(int[] clues) {
+		load(clues);
+
+		// A full grid needs nothing; rate it as easy as it gets
+		Technique hardest = Technique.HIDDEN_SINGLE;
+		int steps = 0;
+		while (emptyCells > 0 && !contradictory) {
+			Technique technique = step();
+			if (technique == null) {
+				hardest = Technique.TRIAL_AND_ERROR;
+				break;
+			}
+
+			if (technique.compareTo(hardest) > 0)
+				hardest = technique;
+
+			++steps;
+		}
+
+		if (contradictory)
+			throw new IllegalArgumentException("The puzzle has no solution");
+
+		return new Rating(hardest, steps);
+	}
+
+	/**
+	 * Applies the simplest technique that makes progress, once, and returns
+	 * it; or returns null if none does.
+	 */
+	private Technique step() {
+		if (hiddenSingle())
+			return Technique.HIDDEN_SINGLE;
+
+		if (nakedSingle())
+			return Technique.NAKED_SINGLE;
+
+		if (pointing())
+			return Technique.POINTING;
+
+		if (claiming())
+			return Technique.CLAIMING;
+
+		if (nakedSubset(2))
+			return Technique.NAKED_PAIR;
+
+		if (hiddenSubset(2))
+			return Technique.HIDDEN_PAIR;
+
+		if (nakedSubset(3))
+			return Technique.NAKED_TRIPLE;
+
+		if (hiddenSubset(3))
+			return Technique.HIDDEN_TRIPLE;
+
+		if (xWing())
+			return Technique.X_WING;
+
+		return null;
+	}
+
+	private void load(int[] clues) {
+		Arrays.fill(values, 0);
+		Arrays.fill(candidates, geometry.getAllDigits());
+		emptyCells = cells;
+		contradictory = false;
+
+		for (int cell = 0; cell < cells; ++cell) {
+			int digit = clues[cell];
+			if (digit < 0 || digit > side)
+				throw new IllegalArgumentException("Invalid digit " + digit + " in cell " + cell);
+
+			if (digit != 0)
+				place(cell, digit);
+		}
+	}
+
+	private void place(int cell, int digit) {
+		values[cell] = digit;
+		candidates[cell] = 0;
+		--emptyCells;
+
+		int bit = 1 << (digit - 1);
+		for (int peer : geometry.getPeers(cell)) {
+			if (values[peer] == digit)
+				contradictory = true;
+			else
+				eliminate(peer, bit);
+		}
+	}
+
+	/**
+	 * Removes the given digits from the candidates of a cell, and returns
+	 * whether any was there.
+	 */
+	private boolean eliminate(int cell, int digits) {
+		int cellCandidates = candidates[cell];
+		if ((cellCandidates & digits) == 0)
+			return false;
+
+		candidates[cell] = cellCandidates & ~digits;
+		if (candidates[cell] == 0)
+			contradictory = true;
+
+		return true;
+	}
+
+	// Techniques
+	private boolean hiddenSingle() {
+		for (int unit = 0; unit < geometry.getUnits(); ++unit) {
+			int[] unitCells = geometry.getUnit(unit);
+			int once = 0, twice = 0;
+			for (int cell : unitCells) {
+				twice |= once & candidates[cell];
+				once |= candidates[cell];
+			}
+
+			int singles = once & ~twice;
+			if (singles == 0)
+				continue;
+
+			int bit = singles & -singles;
+			for (int cell : unitCells) {
+				if ((candidates[cell] & bit) != 0) {
+					place(cell, Integer.numberOfTrailingZeros(bit) + 1);
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	private boolean nakedSingle() {
+		for (int cell = 0; cell < cells; ++cell) {
+			int cellCandidates = candidates[cell];
+			if (cellCandidates != 0 && (cellCandidates & (cellCandidates - 1)) == 0) {
+				place(cell, Integer.numberOfTrailingZeros(cellCandidates) + 1);
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean pointing() {
+		for (int group = 0; group < side; ++group) {
+			int[] groupCells = geometry.getUnit(2 * side + group);
+			for (int bit = 1; bit <= geometry.getAllDigits(); bit <<= 1) {
+				int rows = 0, columns = 0;
+				for (int cell : groupCells) {
+					if ((candidates[cell] & bit) != 0) {
+						rows |= 1 << geometry.getRow(cell);
+						columns |= 1 << geometry.getColumn(cell);
+					}
+				}
+
+				if (rows == 0)
+					continue;
+
+				if (Integer.bitCount(rows) == 1 && eliminateOutsideGroup(Integer.numberOfTrailingZeros(rows), group, bit))
+					return true;
+
+				if (Integer.bitCount(columns) == 1 && eliminateOutsideGroup(side + Integer.numberOfTrailingZeros(columns), group, bit))
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean eliminateOutsideGroup(int line, int group, int bit) {
+		boolean changed = false;
+		for (int cell : geometry.getUnit(line)) {
+			if (geometry.getBox(cell) != group)
+				changed |= eliminate(cell, bit);
+		}
+
+		return changed;
+	}
+
+	private boolean claiming() {
+		for (int line = 0; line < 2 * side; ++line) {
+			int[] lineCells = geometry.getUnit(line);
+			for (int bit = 1; bit <= geometry.getAllDigits(); bit <<= 1) {
+				int groups = 0;
+				for (int cell : lineCells) {
+					if ((candidates[cell] & bit) != 0)
+						groups |= 1 << geometry.getBox(cell);
+				}
+
+				if (Integer.bitCount(groups) != 1)
+					continue;
+
+				boolean changed = false;
+				for (int cell : geometry.getUnit(2 * side + Integer.numberOfTrailingZeros(groups))) {
+					if (!onLine(cell, line))
+						changed |= eliminate(cell, bit);
+				}
+
+				if (changed)
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	private boolean onLine(int cell, int line) {
+		return (line < side) ? geometry.getRow(cell) == line : geometry.getColumn(cell) == line - side;
+	}
+
+	/**
+	 * Looks for {@code size} cells of a unit holding {@code size} candidates
+	 * between them, which the other cells of the unit then cannot hold.
+	 */
+	private boolean nakedSubset(int size) {
+		for (int unit = 0; unit < geometry.getUnits(); ++unit) {
+			int[] unitCells = geometry.getUnit(unit);
+			int count = 0, empty = 0;
+			for (int cell : unitCells) {
+				int cellCandidates = candidates[cell];
+				if (cellCandidates == 0)
+					continue;
+
+				++empty;
+				if (Integer.bitCount(cellCandidates) <= size)
+					subset[count++] = cell;
+			}
+
+			// A subset covering every empty cell removes nothing
+			if (empty > size && count >= size && nakedSubset(unitCells, count, size, 0, 0, 0))
+				return true;
+		}
+
+		return false;
+	}
+
+	private boolean nakedSubset(int[] unitCells, int count, int size, int start, int depth, int digits) {
+		if (depth == size) {
+			boolean changed = false;
+			for (int cell : unitCells) {
+				if ((candidates[cell] & ~digits) != 0)
+					changed |= eliminate(cell, digits);
+			}
+
+			return changed;
+		}
+
+		for (int i = start; i < count; ++i) {
+			int union = digits | candidates[subset[i]];
+			if (Integer.bitCount(union) <= size && nakedSubset(unitCells, count, size, i + 1, depth + 1, union))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Looks for {@code size} digits that fit in only {@code size} cells of a
+	 * unit, which then cannot hold any other digit.
+	 */
+	private boolean hiddenSubset(int size) {
+		for (int unit = 0; unit < geometry.getUnits(); ++unit) {
+			int[] unitCells = geometry.getUnit(unit);
+			Arrays.fill(positions, 0);
+
+			int empty = 0;
+			for (int i = 0; i < side; ++i) {
+				int cellCandidates = candidates[unitCells[i]];
+				if (cellCandidates != 0)
+					++empty;
+
+				for (; cellCandidates != 0; cellCandidates &= cellCandidates - 1)
+					positions[Integer.numberOfTrailingZeros(cellCandidates)] |= 1 << i;
+			}
+
+			if (empty <= size)
+				continue;
+
+			int count = 0;
+			for (int digit = 0; digit < side; ++digit) {
+				int places = Integer.bitCount(positions[digit]);
+				if (places > 0 && places <= size)
+					subset[count++] = digit;
+			}
+
+			if (count >= size && hiddenSubset(unitCells, count, size, 0, 0, 0, 0))
+				return true;
+		}
+
+		return false;
+	}
+
+	private boolean hiddenSubset(int[] unitCells, int count, int size, int start, int depth, int digits, int places) {
+		if (depth == size) {
+			boolean changed = false;
+			for (int i = 0; i < side; ++i) {
+				if ((places & (1 << i)) != 0)
+					changed |= eliminate(unitCells[i], ~digits);
+			}
+
+			return changed;
+		}
+
+		for (int i = start; i < count; ++i) {
+			int digit = subset[i];
+			int union = places | positions[digit];
+			if (Integer.bitCount(union) <= size && hiddenSubset(unitCells, count, size, i + 1, depth + 1, digits | (1 << digit), union))
+				return true;
+		}
+
+		return false;
+	}
+
+	private boolean xWing() {
+		for (int bit = 1; bit <= geometry.getAllDigits(); bit <<= 1) {
+			if (xWing(bit, 0) || xWing(bit, side))
+				return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Looks for an X-wing on a digit with rows as base lines when
+	 * {@code firstLine} is 0, or columns when it is {@code side}.
+	 */
+	private boolean xWing(int bit, int firstLine) {
+		for (int i = 0; i < side; ++i) {
+			int[] line = geometry.getUnit(firstLine + i);
+			int mask = 0;
+			for (int j = 0; j < side; ++j) {
+				if ((candidates[line[j]] & bit) != 0)
+					mask |= 1 << j;
+			}
+
+			lineMasks[i] = mask;
+		}
+
+		// Units are listed in row-major order, so cell l of a cross line lies
+		// on base line l
+		int firstCrossLine = side - firstLine;
+		for (int i = 0; i < side; ++i) {
+			if (Integer.bitCount(lineMasks[i]) != 2)
+				continue;
+
+			for (int k = i + 1; k < side; ++k) {
+				if (lineMasks[k] != lineMasks[i])
+					continue;
+
+				boolean changed = false;
+				for (int mask = lineMasks[i]; mask != 0; mask &= mask - 1) {
+					int[] crossLine = geometry.getUnit(firstCrossLine + Integer.numberOfTrailingZeros(mask));
+					for (int l = 0; l < side; ++l) {
+						if (l != i && l != k)
+							changed |= eliminate(crossLine[l], bit);
+					}
+				}
+
+				if (changed)
+					return true;
+			}
+		}
+
+		return false;
+	}
+
+	private static final class CacheEntry {
+
+		final String key;
+		final Rating rating;
+
+		CacheEntry(String key, Rating rating) {
+			this.key = key;
+			this.rating = rating;
+		}
+	}
+}
@@ -1,179 +1,665 @@
 package me.totom3.sudoku;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
 import java.util.Set;
 
 /**
+ * Backtracking solver for boards of any {@link SudokuGeometry}. Candidates
+ * are kept as bitmasks of the digits still missing from every row, column
+ * and group. By default the search goes in row-major order, which is fine
+ * for 9x9 grids; larger boards need {@link CellOrdering#MOST_CONSTRAINED} and
+ * {@link #setPropagating(boolean) propagation} to finish in reasonable time.
  *
  * @author Totom3
  */
 public class SudokuSolver {
 
-	private static final List<Integer> DIGITS = Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9);
+	/**
+	 * The order in which empty cells are branched on.
+	 */
+	public enum CellOrdering {
+
+		/**
+		 * Visits the empty cells in row-major order.
+		 */
+		ROW_MAJOR,
+		/**
+		 * Always branches on the empty cell with the fewest candidates, and
+		 * gives up on a branch as soon as any cell has none left.
+		 */
+		MOST_CONSTRAINED
+	}
+
+	private static final int NONE = -1;
+
+	// One solver per geometry, indexed by box size
+	private static final ThreadLocal<SudokuSolver[]> THREAD_SOLVERS = ThreadLocal.withInitial(() -> new SudokuSolver[SudokuGeometry.MAX_BOX_SIZE + 1]);
+
+	/**
+	 * Returns a 9x9 solver confined to the calling thread, ordering by most
+	 * constrained cell and propagating singles. Callers should
+	 * {@link #reset(int[]) reset} it to their grid before use, and must not
+	 * let it escape to other threads.
+	 */
+	public static SudokuSolver forCurrentThread() {
+		return forCurrentThread(SudokuGeometry.STANDARD);
+	}
+
+	/**
+	 * Same as {@link #forCurrentThread()}, for grids of the given geometry.
+	 */
+	public static SudokuSolver forCurrentThread(SudokuGeometry geometry) {
+		SudokuSolver[] solvers = THREAD_SOLVERS.get();
+		SudokuSolver solver = solvers[geometry.getBoxSize()];
+		if (solver == null) {
+			solver = new SudokuSolver(geometry);
+			solver.setCellOrdering(CellOrdering.MOST_CONSTRAINED);
+			solver.setPropagating(true);
+			solvers[geometry.getBoxSize()] = solver;
+		}
 
-	private final List<Integer>[] rowMissingValues = new List[9];
-	private final List<Integer>[] columnMissingValues = new List[9];
-	private final List<Integer>[] groupMissingValues = new List[9];
+		return solver;
+	}
 
-	private final List<Integer> emptyCells, nonEmptyCells;
-	private final LinkedList<PotentialCellSolution> potentialSolutions;
+	private final SudokuGeometry geometry;
+	private final int cells;
+
+	private final int[] rowMissingValues;
+	private final int[] columnMissingValues;
+	private final int[] groupMissingValues;
+
+	private final int[] emptyCells;
+	private int numberOfEmptyCells;
 
 	private final int[] sudoku;
-	private final Set<int[]> solutions;
+	private Set<int[]> solutions;
+
+	// Empty cells bucketed by their number of candidates, as doubly linked
+	// lists threaded through the cell indices. Only used when ordering by
+	// most constrained cell.
+	private final int[] candidateCount;
+	private final int[] bucketHeads;
+	private final int[] nextInBucket;
+	private final int[] previousInBucket;
+
+	// Cells filled by propagation, in order, so they can be undone on backtrack
+	private final int[] trail;
+	private int trailSize;
+
+	private CellOrdering cellOrdering = CellOrdering.ROW_MAJOR;
+	private boolean propagating;
+	private long nodesExplored;
+
+	// Only counted when metrics are enabled; per search
+	private long backtracks;
+	private long deadEnds;
 
 	private boolean solved;
+	private boolean contradictory;
+
+	private int limit;
+	private int solutionCount;
+	private boolean collectingSolutions;
+	private int[] firstSolution;
+
+	/**
+	 * Creates a solver for the empty 9x9 grid; use {@link #reset(int[])} to
+	 * load another one.
+	 */
+	public SudokuSolver() {
+		this(SudokuGeometry.STANDARD);
+	}
 
+	/**
+	 * Creates a solver for the empty grid of the given geometry.
+	 */
+	public SudokuSolver(SudokuGeometry geometry) {
+		this(geometry, new int[geometry.getCells()]);
+	}
+
+	/**
+	 * Creates a solver for the given grid, whose geometry is deduced from its
+	 * number of cells.
+	 */
 	public SudokuSolver(int[] sudoku) {
-		this.sudoku = sudoku;
-		this.emptyCells = new ArrayList<>();
-		this.nonEmptyCells = new ArrayList<>();
-		this.solutions = new HashSet<>();
-		this.potentialSolutions = new LinkedList<>();
-
-		for (int i = 0; i < 81; ++i) {
-			if (sudoku[i] == 0) {
-				emptyCells.add(i);
-			} else {
-				nonEmptyCells.add(i);
-			}
-		}
+		this(SudokuGeometry.forCells(sudoku.length), sudoku);
+	}
+
+	private SudokuSolver(SudokuGeometry geometry, int[] sudoku) {
+		this.geometry = geometry;
+		this.cells = geometry.getCells();
+
+		int side = geometry.getSide();
+		this.rowMissingValues = new int[side];
+		this.columnMissingValues = new int[side];
+		this.groupMissingValues = new int[side];
 
-		if (emptyCells.isEmpty()) {
-			solved = true;
+		this.emptyCells = new int[cells];
+		this.sudoku = new int[cells];
 
-			int[] solution = new int[81];
-			System.arraycopy(sudoku, 0, solution, 0, 81);
-			solutions.add(solution);
-			return;
+		this.candidateCount = new int[cells];
+		this.bucketHeads = new int[side + 1];
+		this.nextInBucket = new int[cells];
+		this.previousInBucket = new int[cells];
+
+		this.trail = new int[cells];
+
+		reset(sudoku);
+	}
+
+	public SudokuGeometry getGeometry() {
+		return geometry;
+	}
+
+	/**
+	 * Loads a new grid into this solver, discarding the previous one, so that
+	 * a single instance can be reused for any number of grids. The search
+	 * options are kept, while the node counter starts again from zero.
+	 */
+	public final void reset(int[] sudoku) {
+		if (sudoku.length != cells)
+			throw new IllegalArgumentException("Expected " + cells + " cells, got " + sudoku.length);
+
+		System.arraycopy(sudoku, 0, this.sudoku, 0, cells);
+		this.solutions = null;
+		this.solved = false;
+		this.contradictory = false;
+		this.nodesExplored = 0;
+
+		int empty = 0;
+		for (int i = 0; i < cells; ++i) {
+			if (sudoku[i] == 0)
+				emptyCells[empty++] = i;
 		}
+		this.numberOfEmptyCells = empty;
 
-		for (int i = 0; i < 9; ++i) {
-			rowMissingValues[i] = new ArrayList<>(DIGITS);
-			columnMissingValues[i] = new ArrayList<>(DIGITS);
-			groupMissingValues[i] = new ArrayList<>(DIGITS);
+		int allDigits = geometry.getAllDigits();
+		for (int i = 0; i < rowMissingValues.length; ++i) {
+			rowMissingValues[i] = allDigits;
+			columnMissingValues[i] = allDigits;
+			groupMissingValues[i] = allDigits;
 		}
 
-		for (int index : nonEmptyCells) {
+		for (int index = 0; index < cells; ++index) {
 			int clue = sudoku[index];
+			if (clue == 0)
+				continue;
+
+			int bit = 1 << (clue - 1);
+			int row = getRow(index);
+			int column = getColumn(index);
+			int group = getGroup(index);
+
+			// A clue repeated within a row, column or group can never be completed
+			if ((rowMissingValues[row] & columnMissingValues[column] & groupMissingValues[group] & bit) == 0) {
+				contradictory = true;
+				return;
+			}
 
-			rowMissingValues[getRow(index)].remove((Integer) clue);
-			columnMissingValues[getColumn(index)].remove((Integer) clue);
-			groupMissingValues[getGroup(index)].remove((Integer) clue);
+			removeFromMissingValues(bit, row, column, group);
 		}
 	}
 
 	public Set<int[]> getSolutions() {
 		return getSolutions(-1);
 	}
-	
+
 	public Set<int[]> getSolutions(int limit) {
 		if (solved)
 			return solutions;
 
-		try {
-			evaluateCell(0, limit);
-		} catch (SolvedException ex) {
+		solutions = new HashSet<>();
+		if (contradictory) {
+			// No solutions
+		} else if (numberOfEmptyCells == 0) {
+			saveSolution();
+		} else {
+			search(limit, true, null);
 		}
 
 		solved = true;
+		return solutions;
+	}
+
+	/**
+	 * Counts the solutions of the grid, stopping as soon as {@code limit} of
+	 * them have been found; a limit smaller than 1 counts them all. Unlike
+	 * {@link #getSolutions(int)}, nothing is stored or allocated, and the
+	 * solver can be asked again with another limit.
+	 */
+	public int countSolutions(int limit) {
+		return countSolutions(limit, null);
+	}
 
-		emptyCells.clear();
-		nonEmptyCells.clear();
-		potentialSolutions.clear();
+	/**
+	 * Same as {@link #countSolutions(int)}, but also copies the first solution
+	 * found into {@code firstSolution} (when there is one), still without
+	 * allocating anything.
+	 */
+	public int countSolutions(int limit, int[] firstSolution) {
+		if (contradictory)
+			return 0;
 
-		return solutions;
+		if (numberOfEmptyCells == 0) {
+			if (firstSolution != null)
+				System.arraycopy(sudoku, 0, firstSolution, 0, cells);
+
+			return 1;
+		}
+
+		return search(limit, false, firstSolution);
+	}
+
+	private int search(int limit, boolean collectSolutions, int[] firstSolution) {
+		SudokuMetrics.SolveEvent event = SudokuMetrics.ENABLED ? SudokuMetrics.beginSolve() : null;
+		long nodesAtStart = nodesExplored;
+		backtracks = 0;
+		deadEnds = 0;
+
+		this.limit = limit;
+		this.solutionCount = 0;
+		this.collectingSolutions = collectSolutions;
+		this.firstSolution = firstSolution;
+
+		if (cellOrdering == CellOrdering.MOST_CONSTRAINED)
+			fillBuckets();
+
+		evaluate(0, numberOfEmptyCells);
+		this.firstSolution = null;
+
+		if (event != null)
+			SudokuMetrics.endSolve(event, nodesExplored - nodesAtStart, backtracks, deadEnds, solutionCount);
+
+		return solutionCount;
+	}
+
+	/**
+	 * Turns the given cell back into an empty cell, updating the candidates in
+	 * place rather than reloading the whole grid.
+	 */
+	public void removeClue(int index) {
+		checkNotContradictory();
+
+		int digit = sudoku[index];
+		if (digit == 0)
+			throw new IllegalArgumentException("Cell " + index + " is already empty");
+
+		sudoku[index] = 0;
+		addToMissingValues(1 << (digit - 1), getRow(index), getColumn(index), getGroup(index));
+
+		// Keep the empty cells in row-major order
+		int position = numberOfEmptyCells++;
+		while (position > 0 && emptyCells[position - 1] > index) {
+			emptyCells[position] = emptyCells[position - 1];
+			--position;
+		}
+
+		emptyCells[position] = index;
+		solved = false;
+	}
+
+	/**
+	 * Fills the given empty cell with a clue, updating the candidates in place
+	 * rather than reloading the whole grid. The digit must be one of the cell's
+	 * candidates.
+	 */
+	public void placeClue(int index, int digit) {
+		checkNotContradictory();
+
+		if (sudoku[index] != 0)
+			throw new IllegalArgumentException("Cell " + index + " is not empty");
+
+		int bit = 1 << (digit - 1);
+		if ((getCandidates(index) & bit) == 0)
+			throw new IllegalArgumentException("Digit " + digit + " does not fit in cell " + index);
+
+		sudoku[index] = digit;
+		removeFromMissingValues(bit, getRow(index), getColumn(index), getGroup(index));
+
+		int position = 0;
+		while (emptyCells[position] != index)
+			++position;
+
+		System.arraycopy(emptyCells, position + 1, emptyCells, position, --numberOfEmptyCells - position);
+		solved = false;
+	}
+
+	/**
+	 * Returns the digits that can still go in the given cell, as a mask where
+	 * bit {@code d - 1} stands for digit {@code d}. Filled cells have none.
+	 */
+	public int getCandidateMask(int index) {
+		if (contradictory || sudoku[index] != 0)
+			return 0;
+
+		return getCandidates(index);
+	}
+
+	private void checkNotContradictory() {
+		if (contradictory)
+			throw new IllegalStateException("The grid has repeated clues");
 	}
 
-	private void evaluateCell(int emptyCellIndex, int limit) {
-		boolean isLastEmptyCell = emptyCells.size() == emptyCellIndex + 1;
-		int cellIndex = emptyCells.get(emptyCellIndex);
+	public CellOrdering getCellOrdering() {
+		return cellOrdering;
+	}
 
-		int row = getRow(cellIndex);
-		int column = getColumn(cellIndex);
-		int group = getGroup(cellIndex);
+	public void setCellOrdering(CellOrdering cellOrdering) {
+		if (cellOrdering == null)
+			throw new NullPointerException("cellOrdering");
 
-		List<Integer> possibleValues = intersect(rowMissingValues[row], columnMissingValues[column], groupMissingValues[group]);
+		this.cellOrdering = cellOrdering;
+	}
 
-		// Branch is dead; stop here.
-		if (possibleValues.isEmpty())
-			return;
+	public boolean isPropagating() {
+		return propagating;
+	}
 
-		for (int value : possibleValues) {
-			removeFromMissingValues(value, row, column, group);
-			potentialSolutions.add(new PotentialCellSolution(cellIndex, value));
+	/**
+	 * Enables constraint propagation: before every branch, naked singles and
+	 * hidden singles (per row, column and group) are placed until none are
+	 * left, and the solver only guesses once propagation stalls.
+	 */
+	public void setPropagating(boolean propagating) {
+		this.propagating = propagating;
+	}
 
-			if (isLastEmptyCell) {
-				// Save this as a solution
+	/**
+	 * Returns the number of search nodes (cells branched on) visited so far.
+	 */
+	public long getNodesExplored() {
+		return nodesExplored;
+	}
+
+	/**
+	 * Propagates forced digits if enabled, then branches on the next empty
+	 * cell. Returns {@code true} once the solution limit has been reached, so
+	 * that the whole search unwinds without further work. Everything placed
+	 * here is undone before returning.
+	 */
+	private boolean evaluate(int emptyCellIndex, int remainingCells) {
+		int trailMark = trailSize;
+
+		if (propagating) {
+			int placed = propagate();
+			if (placed == NONE) {
+				// Branch is dead; stop here.
+				if (SudokuMetrics.ENABLED)
+					++deadEnds;
+
+				undoTrail(trailMark);
+				return false;
+			}
+
+			remainingCells -= placed;
+		}
+
+		boolean done;
+		if (remainingCells == 0) {
+			// Save this as a solution
+			++solutionCount;
+			if (collectingSolutions)
 				saveSolution();
-				if (limit >= 1 && solutions.size() >= limit)
-					throw new SolvedException();
-			} else {
-				evaluateCell(emptyCellIndex + 1, limit);
+
+			if (solutionCount == 1 && firstSolution != null)
+				System.arraycopy(sudoku, 0, firstSolution, 0, cells);
+
+			done = limit >= 1 && solutionCount >= limit;
+		} else {
+			done = evaluateCell(emptyCellIndex, remainingCells);
+		}
+
+		undoTrail(trailMark);
+		return done;
+	}
+
+	/**
+	 * Tries every candidate of the cell selected by the current ordering,
+	 * recursing after each placement.
+	 */
+	private boolean evaluateCell(int emptyCellIndex, int remainingCells) {
+		int cellIndex;
+		if (cellOrdering == CellOrdering.MOST_CONSTRAINED) {
+			// Some cell has no candidates left; the branch is dead.
+			if (bucketHeads[0] != NONE) {
+				if (SudokuMetrics.ENABLED)
+					++deadEnds;
+
+				return false;
 			}
 
-			addToMissingValues(value, row, column, group);
-			potentialSolutions.removeLast();
+			cellIndex = NONE;
+			for (int count = 1; cellIndex == NONE; ++count)
+				cellIndex = bucketHeads[count];
+		} else {
+			// Skip the cells filled by propagation
+			while (sudoku[emptyCells[emptyCellIndex]] != 0)
+				++emptyCellIndex;
+
+			cellIndex = emptyCells[emptyCellIndex];
+		}
+
+		++nodesExplored;
+
+		// An empty mask means the branch is dead; the loop won't run.
+		int possibleValues = getCandidates(cellIndex);
+		if (SudokuMetrics.ENABLED && possibleValues == 0)
+			++deadEnds;
+
+		boolean done = false;
+		while (possibleValues != 0 && !done) {
+			int bit = Integer.lowestOneBit(possibleValues);
+			possibleValues ^= bit;
+
+			placeDigit(cellIndex, bit);
+			done = evaluate(emptyCellIndex + 1, remainingCells - 1);
+			removeDigit(cellIndex);
+
+			if (SudokuMetrics.ENABLED && !done)
+				++backtracks;
 		}
+
+		return done;
 	}
 
-	private void saveSolution() {
-		int[] solution = new int[81];
-		System.arraycopy(sudoku, 0, solution, 0, 81);
+	/**
+	 * Places naked and hidden singles until none are left. Returns the number
+	 * of cells filled, or {@link #NONE} if the grid turned out to be
+	 * contradictory. Every placement is pushed on the trail.
+	 */
+	private int propagate() {
+		int placed = 0;
+		boolean progress = true;
+
+		while (progress) {
+			progress = false;
+
+			// Naked singles: cells with a single candidate
+			for (int i = 0; i < numberOfEmptyCells; ++i) {
+				int cellIndex = emptyCells[i];
+				if (sudoku[cellIndex] != 0)
+					continue;
+
+				int candidates = getCandidates(cellIndex);
+				if (candidates == 0)
+					return NONE;
+
+				if ((candidates & (candidates - 1)) == 0) {
+					placeForcedDigit(cellIndex, candidates);
+					++placed;
+					progress = true;
+				}
+			}
 
-		for (PotentialCellSolution pcs : potentialSolutions) {
-			solution[pcs.index] = pcs.solution;
+			// Hidden singles: digits with a single possible cell in a unit
+			for (int unit = 0; unit < rowMissingValues.length * 3; ++unit) {
+				int missing = getUnitMissingValues(unit);
+				if (missing == 0)
+					continue;
+
+				int[] unitCells = geometry.getUnit(unit);
+				int once = 0, twice = 0;
+				for (int cellIndex : unitCells) {
+					if (sudoku[cellIndex] != 0)
+						continue;
+
+					int candidates = getCandidates(cellIndex);
+					twice |= once & candidates;
+					once |= candidates;
+				}
+
+				// A missing digit that fits nowhere in the unit
+				if ((missing & ~once) != 0)
+					return NONE;
+
+				int singles = missing & ~twice;
+				while (singles != 0) {
+					int bit = Integer.lowestOneBit(singles);
+					singles ^= bit;
+
+					int target = NONE;
+					for (int cellIndex : unitCells) {
+						if (sudoku[cellIndex] == 0 && (getCandidates(cellIndex) & bit) != 0) {
+							target = cellIndex;
+							break;
+						}
+					}
+
+					// Another single took the only cell this digit could go in
+					if (target == NONE)
+						return NONE;
+
+					placeForcedDigit(target, bit);
+					++placed;
+					progress = true;
+				}
+			}
 		}
 
-		solutions.add(solution);
+		return placed;
 	}
 
-	private void addToMissingValues(int number, int row, int column, int group) {
-		rowMissingValues[row].add(number);
-		columnMissingValues[column].add(number);
-		groupMissingValues[group].add(number);
+	private void placeForcedDigit(int cellIndex, int bit) {
+		placeDigit(cellIndex, bit);
+		trail[trailSize++] = cellIndex;
 	}
 
-	private void removeFromMissingValues(int number, int row, int column, int group) {
-		rowMissingValues[row].remove((Integer) number);
-		columnMissingValues[column].remove((Integer) number);
-		groupMissingValues[group].remove((Integer) number);
+	private void undoTrail(int trailMark) {
+		while (trailSize > trailMark)
+			removeDigit(trail[--trailSize]);
 	}
 
-	private static List<Integer> intersect(List<Integer> list1, List<Integer> list2, List<Integer> list3) {
-		List<Integer> result = new ArrayList<>(list1);
-		result.removeIf(i -> !list2.contains(i) || !list3.contains(i));
-		return result;
+	private void placeDigit(int cellIndex, int bit) {
+		if (cellOrdering == CellOrdering.MOST_CONSTRAINED) {
+			unlinkFromBucket(cellIndex);
+			adjustPeerCounts(cellIndex, bit, -1);
+		}
+
+		removeFromMissingValues(bit, getRow(cellIndex), getColumn(cellIndex), getGroup(cellIndex));
+		sudoku[cellIndex] = Integer.numberOfTrailingZeros(bit) + 1;
 	}
 
-	private static int getRow(int i) {
-		return i / 9;
+	private void removeDigit(int cellIndex) {
+		int bit = 1 << (sudoku[cellIndex] - 1);
+		sudoku[cellIndex] = 0;
+		addToMissingValues(bit, getRow(cellIndex), getColumn(cellIndex), getGroup(cellIndex));
+
+		if (cellOrdering == CellOrdering.MOST_CONSTRAINED) {
+			adjustPeerCounts(cellIndex, bit, +1);
+			linkToBucket(cellIndex, Integer.bitCount(getCandidates(cellIndex)));
+		}
 	}
 
-	private static int getColumn(int i) {
-		return i % 9;
+	/**
+	 * Moves every empty peer of the given cell that has {@code bit} as a
+	 * candidate to the neighbouring bucket. Must be called while the digit is
+	 * missing from the cell's row, column and group.
+	 */
+	private void adjustPeerCounts(int cellIndex, int bit, int delta) {
+		for (int peer : geometry.getPeers(cellIndex)) {
+			if (sudoku[peer] != 0 || (getCandidates(peer) & bit) == 0)
+				continue;
+
+			unlinkFromBucket(peer);
+			linkToBucket(peer, candidateCount[peer] + delta);
+		}
 	}
 
-	private static int getGroup(int i) {
-		// Java equivalent of 3*floor(i/27) + (floor(i/3) mod 3)
-		return 3 * (i / 27) + ((i / 3) % 3);
+	private void fillBuckets() {
+		for (int count = 0; count < bucketHeads.length; ++count)
+			bucketHeads[count] = NONE;
+
+		for (int i = 0; i < numberOfEmptyCells; ++i) {
+			int cellIndex = emptyCells[i];
+			linkToBucket(cellIndex, Integer.bitCount(getCandidates(cellIndex)));
+		}
 	}
 
-	private static class PotentialCellSolution {
+	private void linkToBucket(int cellIndex, int count) {
+		int head = bucketHeads[count];
+		candidateCount[cellIndex] = count;
+		previousInBucket[cellIndex] = NONE;
+		nextInBucket[cellIndex] = head;
+		if (head != NONE)
+			previousInBucket[head] = cellIndex;
+
+		bucketHeads[count] = cellIndex;
+	}
 
-		int index;
-		int solution;
+	private void unlinkFromBucket(int cellIndex) {
+		int previous = previousInBucket[cellIndex];
+		int next = nextInBucket[cellIndex];
+		if (previous == NONE)
+			bucketHeads[candidateCount[cellIndex]] = next;
+		else
+			nextInBucket[previous] = next;
 
-		PotentialCellSolution(int index, int solution) {
-			this.index = index;
-			this.solution = solution;
-		}
+		if (next != NONE)
+			previousInBucket[next] = previous;
 	}
 
-	private static class SolvedException extends RuntimeException {
+	private int getCandidates(int cellIndex) {
+		return rowMissingValues[getRow(cellIndex)] & columnMissingValues[getColumn(cellIndex)] & groupMissingValues[getGroup(cellIndex)];
+	}
+
+	private int getUnitMissingValues(int unit) {
+		int side = rowMissingValues.length;
+		if (unit < side)
+			return rowMissingValues[unit];
+
+		if (unit < 2 * side)
+			return columnMissingValues[unit - side];
+
+		return groupMissingValues[unit - 2 * side];
+	}
+
+	private void saveSolution() {
+		int[] solution = new int[cells];
+		System.arraycopy(sudoku, 0, solution, 0, cells);
+		solutions.add(solution);
+	}
+
+	private void addToMissingValues(int bit, int row, int column, int group) {
+		rowMissingValues[row] |= bit;
+		columnMissingValues[column] |= bit;
+		groupMissingValues[group] |= bit;
+	}
+
+	private void removeFromMissingValues(int bit, int row, int column, int group) {
+		rowMissingValues[row] &= ~bit;
+		columnMissingValues[column] &= ~bit;
+		groupMissingValues[group] &= ~bit;
+	}
+
+	private int getRow(int i) {
+		return geometry.getRow(i);
+	}
+
+	private int getColumn(int i) {
+		return geometry.getColumn(i);
+	}
 
+	private int getGroup(int i) {
+		return geometry.getBox(i);
 	}
 }